@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.simolecule.centres;
+
+import com.simolecule.centres.config.Configuration;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap footprint of the digraph storage options, the digraph of every
+ * configuration in the validation suite is fully expanded and retained, the
+ * heap used is reported as the {@code bytes} and {@code bytesPerNode}
+ * counters. The throughput of each storage is measured by
+ * {@link DigraphBenchmark} and {@link LabelBenchmark}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class DigraphStorageBenchmark {
+
+  @Param({"Linked", "Compact"})
+  public Digraph.Storage storage;
+
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class Footprint {
+
+    public long nodes;
+    public long bytes;
+    public long bytesPerNode;
+
+    @Setup(Level.Iteration)
+    public void reset()
+    {
+      nodes = bytes = bytesPerNode = 0;
+    }
+  }
+
+  private final List<CdkMol> mols  = new ArrayList<>();
+  private final List<IAtom>  focus = new ArrayList<>();
+
+  @Setup(Level.Trial)
+  public void setup(ValidationSet set)
+  {
+    for (IAtomContainer mol : set.mols) {
+      CdkMol cdkmol = new CdkMol(mol);
+      for (Configuration<IAtom, IBond> conf : CdkLabeller.createConfigs(mol)) {
+        mols.add(cdkmol);
+        focus.add(conf.getFocus());
+      }
+    }
+  }
+
+  private static long usedHeap()
+  {
+    Runtime rt = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++)
+      System.gc();
+    return rt.totalMemory() - rt.freeMemory();
+  }
+
+  @Benchmark
+  public List<Digraph<IAtom, IBond>> retainAll(Footprint footprint)
+  {
+    List<Digraph<IAtom, IBond>> retained = new ArrayList<>(mols.size());
+    long before = usedHeap();
+    for (int i = 0; i < mols.size(); i++) {
+      Digraph<IAtom, IBond> digraph = new Digraph<>(mols.get(i), storage);
+      digraph.init(focus.get(i));
+      try {
+        digraph.expandAll();
+      } catch (BudgetExceededException e) {
+        // partially expanded, still counted
+      }
+      footprint.nodes += digraph.getNumNodes();
+      retained.add(digraph);
+    }
+    footprint.bytes = usedHeap() - before;
+    footprint.bytesPerNode = footprint.bytes / Math.max(1, footprint.nodes);
+    return retained;
+  }
+}
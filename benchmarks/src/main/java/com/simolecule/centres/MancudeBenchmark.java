@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.simolecule.centres;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculation of the fractional atomic numbers (Rule 1a) of every molecule
+ * in the validation suite.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MancudeBenchmark {
+
+  private final List<CdkMol> mols = new ArrayList<>();
+
+  @Setup(Level.Trial)
+  public void setup(ValidationSet set)
+  {
+    for (IAtomContainer mol : set.mols)
+      mols.add(new CdkMol(mol));
+  }
+
+  @Benchmark
+  public void calcFracAtomNums(Blackhole bh)
+  {
+    for (CdkMol mol : mols)
+      bh.consume(Mancude.CalcFracAtomNums(mol));
+  }
+
+  @Benchmark
+  public void calcAtomNums(Blackhole bh)
+  {
+    for (CdkMol mol : mols)
+      bh.consume(Mancude.calcAtomNums(mol));
+  }
+
+  /**
+   * A large fused heteroaromatic, where the calculation is most visible.
+   */
+  @State(Scope.Thread)
+  public static class Phthalocyanine {
+
+    private CdkMol mol;
+
+    @Setup(Level.Trial)
+    public void setup() throws CDKException
+    {
+      SmilesParser smipar = new SmilesParser(SilentChemObjectBuilder.getInstance());
+      mol = new CdkMol(smipar.parseSmiles("C1=CC=C2C(=C1)C3=NC4=C5C=CC=CC5=C(N4)N=C6C7=CC=CC=C7C(=N6)N=C8C9=CC=CC=C9C(=N8)N=C2N3"));
+    }
+  }
+
+  @Benchmark
+  public Mancude.AtomNums phthalocyanine(Phthalocyanine state)
+  {
+    return Mancude.calcAtomNums(state.mol);
+  }
+}
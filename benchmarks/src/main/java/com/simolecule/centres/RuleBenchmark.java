@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.simolecule.centres;
+
+import com.simolecule.centres.config.Configuration;
+import com.simolecule.centres.config.Tetrahedral;
+import com.simolecule.centres.rules.Rule1a;
+import com.simolecule.centres.rules.Rule1b;
+import com.simolecule.centres.rules.Rule2;
+import com.simolecule.centres.rules.Rule3;
+import com.simolecule.centres.rules.Rule4a;
+import com.simolecule.centres.rules.Rule4b;
+import com.simolecule.centres.rules.Rule4c;
+import com.simolecule.centres.rules.Rule5New;
+import com.simolecule.centres.rules.Rule6;
+import com.simolecule.centres.rules.Rules;
+import com.simolecule.centres.rules.SequenceRule;
+import com.simolecule.centres.rules.Sort;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comparison of the ligands of each tetrahedral centre in the validation
+ * suite. The digraphs are labelled during setup so the auxiliary
+ * descriptors needed by rules 4 and 5 are present. Comparisons sort the
+ * branches in place, the measurement is therefore of comparing already
+ * expanded and (mostly) ordered digraphs. The comparison cache and sort
+ * memos of each digraph are kept between invocations when {@code cached}
+ * is true, otherwise they are discarded before every invocation.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RuleBenchmark {
+
+  private static final class Centre {
+    Digraph<IAtom, IBond>             digraph;
+    Node<IAtom, IBond>                root;
+    List<Edge<IAtom, IBond>>          edges;
+    List<Edge<IAtom, IBond>>          buffer;
+    SequenceRule<IAtom, IBond>        rule1a;
+    SequenceRule<IAtom, IBond>        rule4b;
+    SequenceRule<IAtom, IBond>        rule5;
+    Sort<IAtom, IBond>                sorter;
+  }
+
+  // reuse comparisons and sorts made by previous invocations
+  @Param({"true", "false"})
+  public boolean cached;
+
+  private final List<Centre> centres = new ArrayList<>();
+
+  @Setup(Level.Trial)
+  @SuppressWarnings("unchecked")
+  public void setup(ValidationSet set)
+  {
+    for (IAtomContainer mol : set.mols) {
+      CdkMol                            cdkmol  = new CdkMol(mol);
+      List<Configuration<IAtom, IBond>> configs = CdkLabeller.createConfigs(mol);
+      // the digraphs are needed, don't let the pre-pass skip them
+      CdkLabeller labeller = new CdkLabeller();
+      labeller.setConstitutionalPrePass(false);
+      labeller.label(cdkmol, configs);
+      for (Configuration<IAtom, IBond> conf : configs) {
+        Digraph<IAtom, IBond> digraph = conf.getDigraph();
+        if (!(conf instanceof Tetrahedral) || digraph == null || digraph.getRoot() == null)
+          continue;
+        digraph.changeRoot(digraph.getRoot());
+        Centre centre = new Centre();
+        centre.digraph = digraph;
+        centre.root = digraph.getRoot();
+        centre.edges = new ArrayList<>(centre.root.getEdges());
+        if (centre.edges.size() < 2)
+          continue;
+        centre.buffer = new ArrayList<>(centre.edges.size());
+        centre.rule1a = new Rule1a<>(cdkmol);
+        centre.rule4b = new Rule4b<>(cdkmol);
+        centre.rule5 = new Rule5New<>(cdkmol);
+        // assigns the sorters as the labeller does
+        Rules<IAtom, IBond> rules = new Rules<>(centre.rule1a,
+                                                new Rule1b<>(cdkmol),
+                                                new Rule2<>(cdkmol),
+                                                new Rule3<>(cdkmol),
+                                                new Rule4a<>(cdkmol),
+                                                centre.rule4b,
+                                                new Rule4c<>(cdkmol),
+                                                centre.rule5,
+                                                new Rule6<>(cdkmol));
+        centre.sorter = rules.getSorter();
+        centres.add(centre);
+      }
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void discardCaches()
+  {
+    if (cached)
+      return;
+    for (Centre centre : centres)
+      centre.digraph.invalidate();
+  }
+
+  @Benchmark
+  public void rule1aRecursiveCompare(Blackhole bh)
+  {
+    for (Centre centre : centres)
+      bh.consume(centre.rule1a.recursiveCompare(centre.edges.get(0), centre.edges.get(1)));
+  }
+
+  @Benchmark
+  public void rule4bRecursiveCompare(Blackhole bh)
+  {
+    for (Centre centre : centres)
+      bh.consume(centre.rule4b.recursiveCompare(centre.edges.get(0), centre.edges.get(1)));
+  }
+
+  @Benchmark
+  public void rule5RecursiveCompare(Blackhole bh)
+  {
+    for (Centre centre : centres)
+      bh.consume(centre.rule5.recursiveCompare(centre.edges.get(0), centre.edges.get(1)));
+  }
+
+  @Benchmark
+  public void sortPrioritise(Blackhole bh)
+  {
+    for (Centre centre : centres) {
+      centre.buffer.clear();
+      centre.buffer.addAll(centre.edges);
+      bh.consume(centre.sorter.prioritise(centre.root, centre.buffer));
+    }
+  }
+}
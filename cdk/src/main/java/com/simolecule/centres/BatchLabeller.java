@@ -0,0 +1,366 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.simolecule.centres;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Labels a stream of molecules with a pool of worker threads. One reader
+ * thread pulls records from the input, the workers label them and the
+ * writer (the calling thread) receives the molecules in input order. The
+ * number of records in flight is bounded so a slow writer or slow workers
+ * stall the reader rather than buffering the whole input.
+ * <br>
+ * The threads are kept between calls to process, so one batch labeller can
+ * label several inputs (e.g. the chunks of a file) without starting new
+ * threads for each. Idle threads time out, closing the labeller stops them
+ * straight away.
+ *
+ * <pre>
+ * try (BatchLabeller batch = new BatchLabeller(8)) {
+ *   batch.process(sdfReader, new Consumer&lt;IAtomContainer&gt;() {
+ *     public void accept(IAtomContainer mol) {
+ *       // write mol
+ *     }
+ *   });
+ * }
+ * </pre>
+ */
+public final class BatchLabeller implements AutoCloseable {
+
+  // how long an idle thread is kept
+  private static final long KEEP_ALIVE_SECONDS = 30;
+
+  private final int             numThreads;
+  private final int             queueSize;
+  private final LabellingBudget budget;
+
+  private volatile LabelListener<IAtom, IBond> listener;
+  private volatile FailureHandler              failureHandler = SKIP;
+
+  // created on first use, shared by each call to process
+  private ExecutorService workers;
+  private ExecutorService readers;
+
+  /**
+   * Told about records that could not be parsed or labelled, called from
+   * the worker threads and so must be thread-safe.
+   */
+  public interface FailureHandler {
+
+    /**
+     * A record could not be parsed, it is skipped.
+     *
+     * @param record the record
+     * @param e      the failure
+     */
+    void parseFailed(Object record, RuntimeException e);
+
+    /**
+     * A molecule could not be labelled, it is still passed to the writer.
+     *
+     * @param mol the molecule
+     * @param e   the failure
+     */
+    void labelFailed(IAtomContainer mol, RuntimeException e);
+  }
+
+  private static final FailureHandler SKIP = new FailureHandler() {
+    @Override
+    public void parseFailed(Object record, RuntimeException e)
+    {
+    }
+
+    @Override
+    public void labelFailed(IAtomContainer mol, RuntimeException e)
+    {
+    }
+  };
+
+  /**
+   * Create a batch labeller with the specified number of worker threads.
+   *
+   * @param numThreads number of worker threads
+   */
+  public BatchLabeller(int numThreads)
+  {
+    this(numThreads, 4 * numThreads, LabellingBudget.DEFAULT);
+  }
+
+  /**
+   * Create a batch labeller.
+   *
+   * @param numThreads number of worker threads
+   * @param queueSize  maximum number of records in flight
+   * @param budget     budget for labelling each molecule
+   */
+  public BatchLabeller(int numThreads, int queueSize, LabellingBudget budget)
+  {
+    if (numThreads < 1)
+      throw new IllegalArgumentException("At least one thread is required");
+    if (queueSize < 1)
+      throw new IllegalArgumentException("Queue size must be > 0");
+    this.numThreads = numThreads;
+    this.queueSize = queueSize;
+    this.budget = budget;
+  }
+
+  /**
+   * Set a listener that is told about each labelling, it is called from the
+   * worker threads and so must be thread-safe (e.g.
+   * {@link SlowCentreProfiler}).
+   *
+   * @param listener the listener, null for none
+   */
+  public void setListener(LabelListener<IAtom, IBond> listener)
+  {
+    this.listener = listener;
+  }
+
+  /**
+   * Set the handler that is told about records that failed to parse or
+   * label, by default failures are skipped.
+   *
+   * @param handler the handler, null to skip failures
+   */
+  public void setFailureHandler(FailureHandler handler)
+  {
+    this.failureHandler = handler != null ? handler : SKIP;
+  }
+
+  private static final class DaemonThreadFactory implements ThreadFactory {
+
+    private final String        prefix;
+    private final AtomicInteger count = new AtomicInteger();
+
+    private DaemonThreadFactory(String prefix)
+    {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable r)
+    {
+      Thread thread = new Thread(r, prefix + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+  private static ExecutorService newPool(int numThreads, String prefix)
+  {
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(numThreads, numThreads,
+                                                     KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                                     new LinkedBlockingQueue<Runnable>(),
+                                                     new DaemonThreadFactory(prefix));
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  private synchronized void start()
+  {
+    if (workers == null) {
+      workers = newPool(numThreads, "centres-worker-");
+      // one reader, the reader of a previous call must finish first
+      readers = newPool(1, "centres-reader-");
+    }
+  }
+
+  /**
+   * Stop the worker and reader threads, the labeller may be used again
+   * afterwards (new threads are started).
+   */
+  @Override
+  public synchronized void close()
+  {
+    if (workers != null) {
+      workers.shutdownNow();
+      readers.shutdownNow();
+      workers = null;
+      readers = null;
+    }
+  }
+
+  private void label(IAtomContainer mol)
+  {
+    try {
+      CdkLabeller.label(mol, budget, listener);
+    } catch (RuntimeException e) {
+      failureHandler.labelFailed(mol, e);
+    }
+  }
+
+  private <T> IAtomContainer parse(Function<T, IAtomContainer> parser, T record)
+  {
+    try {
+      return parser.apply(record);
+    } catch (RuntimeException e) {
+      failureHandler.parseFailed(record, e);
+      return null;
+    }
+  }
+
+  /**
+   * Label all the molecules provided by the reader, the labelled molecules
+   * are passed to the writer (on the calling thread) in the order they were
+   * read.
+   *
+   * @param reader the input, only accessed from the reader thread
+   * @param writer the output
+   * @throws InterruptedException the calling thread was interrupted
+   */
+  public void process(final Iterator<IAtomContainer> reader,
+                      final Consumer<IAtomContainer> writer) throws InterruptedException
+  {
+    process(reader, new Function<IAtomContainer, IAtomContainer>() {
+      @Override
+      public IAtomContainer apply(IAtomContainer mol)
+      {
+        return mol;
+      }
+    }, writer);
+  }
+
+  /**
+   * Parse and label all the records provided by the reader. Records are
+   * parsed on the worker threads, so the reader only needs to split the
+   * input (e.g. {@link SdfRecordSplitter}). Records the parser can not read
+   * (returns null or throws) are skipped, the labelled molecules are passed
+   * to the writer (on the calling thread) in the order they were read. If
+   * the reader fails (including with an {@link Error}) the records read
+   * before the failure are written and then the failure is rethrown.
+   *
+   * @param reader the input, only accessed from the reader thread
+   * @param parser parses a record, must be thread-safe
+   * @param writer the output
+   * @param <T>    the record type
+   * @throws InterruptedException the calling thread was interrupted
+   */
+  public <T> void process(final Iterator<T> reader,
+                          final Function<T, IAtomContainer> parser,
+                          final Consumer<IAtomContainer> writer) throws InterruptedException
+  {
+    start();
+    final ExecutorService                       workers = this.workers;
+    final BlockingQueue<Future<IAtomContainer>> pending = new ArrayBlockingQueue<>(queueSize);
+    final Future<IAtomContainer>                end     = new FutureTask<>(new Callable<IAtomContainer>() {
+      @Override
+      public IAtomContainer call()
+      {
+        return null;
+      }
+    });
+    final AtomicReference<Throwable>            error   = new AtomicReference<>();
+
+    Future<?> readerTask = readers.submit(new Runnable() {
+      @Override
+      public void run()
+      {
+        boolean stopped = false;
+        try {
+          while (reader.hasNext()) {
+            final T record = reader.next();
+            pending.put(workers.submit(new Callable<IAtomContainer>() {
+              @Override
+              public IAtomContainer call()
+              {
+                IAtomContainer mol = parse(parser, record);
+                if (mol != null)
+                  label(mol);
+                return mol;
+              }
+            }));
+          }
+        } catch (InterruptedException e) {
+          // writer has stopped
+          stopped = true;
+        } catch (Throwable e) {
+          error.set(e);
+        } finally {
+          // always end the stream so the writer can not wait forever
+          if (!stopped) {
+            try {
+              pending.put(end);
+            } catch (InterruptedException e) {
+              // writer has stopped
+            }
+          }
+        }
+      }
+    });
+
+    try {
+      Future<IAtomContainer> future;
+      while ((future = pending.take()) != end) {
+        try {
+          IAtomContainer mol = future.get();
+          if (mol != null)
+            writer.accept(mol);
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Error)
+            throw (Error) e.getCause();
+          throw new IllegalStateException(e.getCause());
+        }
+      }
+    } finally {
+      // stop the reader and drop the records still in flight, a no-op if
+      // the whole input was written
+      readerTask.cancel(true);
+      Future<IAtomContainer> future;
+      while ((future = pending.poll()) != null)
+        future.cancel(true);
+    }
+
+    Throwable e = error.get();
+    if (e instanceof Error)
+      throw (Error) e;
+    if (e instanceof RuntimeException)
+      throw (RuntimeException) e;
+    if (e != null)
+      throw new IllegalStateException(e);
+  }
+}
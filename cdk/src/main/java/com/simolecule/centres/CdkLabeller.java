@@ -48,6 +48,7 @@ import org.openscience.cdk.stereo.ExtendedTetrahedral;
 import org.openscience.cdk.stereo.TetrahedralChirality;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -148,19 +149,75 @@ public final class CdkLabeller extends Labeller<IAtom, IBond> {
   }
 
   public static void label(IAtomContainer mol) {
+    label(mol, LabellingBudget.DEFAULT);
+  }
+
+  /**
+   * Label the stereo elements of a molecule within the provided budget,
+   * elements that exceed the budget are labelled
+   * {@link Descriptor#BudgetExceeded}.
+   *
+   * @param mol    the molecule
+   * @param budget the labelling budget
+   */
+  public static void label(IAtomContainer mol, LabellingBudget budget) {
+    label(mol, budget, null);
+  }
+
+  /**
+   * Label the stereo elements of a molecule within the provided budget and
+   * report each labelling to a listener, for example a
+   * {@link SlowCentreProfiler}.
+   *
+   * @param mol      the molecule
+   * @param budget   the labelling budget
+   * @param listener the listener, may be null
+   */
+  public static void label(IAtomContainer mol, LabellingBudget budget,
+                           LabelListener<IAtom, IBond> listener) {
 
     List<Sgroup> sgroups = mol.getProperty(CDKConstants.CTAB_SGROUPS);
     if (sgroups != null && !sgroups.isEmpty()) {
-      if (handleSruRepeat(mol, sgroups))
+      if (handleSruRepeat(mol, sgroups, budget, listener))
         return;
     }
 
-    new CdkLabeller().label(new CdkMol(mol),
-                            createConfigs(mol));
+    CdkLabeller labeller = new CdkLabeller();
+    labeller.setListener(listener);
+    labeller.label(new CdkMol(mol),
+                   createConfigs(mol),
+                   budget);
+  }
+
+  /**
+   * Label the stereo elements of a molecule incrementally after an edit,
+   * see {@link Labeller#relabel}. The caller owns the record and must use
+   * it only with this molecule, an empty record labels all the stereo
+   * elements. The edit must preserve the atom objects.
+   *
+   * @param mol     the molecule
+   * @param changed the atoms changed since the last (re)labelling
+   * @param record  the record of the previous (re)labelling
+   */
+  public static void relabel(IAtomContainer mol, Collection<IAtom> changed,
+                             LabellingRecord<IAtom, IBond> record) {
+
+    List<Sgroup> sgroups = mol.getProperty(CDKConstants.CTAB_SGROUPS);
+    if (sgroups != null && !sgroups.isEmpty()) {
+      record.clear();
+      label(mol);
+      return;
+    }
+
+    new CdkLabeller().relabel(new CdkMol(mol),
+                              createConfigs(mol),
+                              changed,
+                              record);
   }
 
   // Handle molecules with structural repeat units (SRU)
-  private static boolean handleSruRepeat(IAtomContainer mol, List<Sgroup> sgroups) {
+  private static boolean handleSruRepeat(IAtomContainer mol, List<Sgroup> sgroups, LabellingBudget budget,
+                                         LabelListener<IAtom, IBond> listener) {
     Sgroup repeatGroup = null;
     for (Sgroup sgroup : sgroups) {
       if (sgroup.getType() == SgroupType.CtabStructureRepeatUnit &&
@@ -257,8 +314,11 @@ public final class CdkLabeller extends Labeller<IAtom, IBond> {
       bond.setOrder(IBond.Order.SINGLE);
       copy.addBond(bond);
 
-      new CdkLabeller().label(new CdkMol(copy),
-                              createConfigs(copy));
+      CdkLabeller labeller = new CdkLabeller();
+      labeller.setListener(listener);
+      labeller.label(new CdkMol(copy),
+                     createConfigs(copy),
+                     budget);
 
       for (Map.Entry<IChemObject,IChemObject> e : remaps.get(1).entrySet()) {
         e.getKey().setProperty("cip.label", e.getValue().getProperty("cip.label"));
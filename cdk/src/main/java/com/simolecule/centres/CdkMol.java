@@ -60,6 +60,12 @@ public final class CdkMol extends BaseMol<IAtom, IBond> {
     return base;
   }
 
+  @Override
+  public String getTitle()
+  {
+    return base.getTitle();
+  }
+
   @Override
   public int getNumAtoms()
   {
@@ -126,6 +132,12 @@ public final class CdkMol extends BaseMol<IAtom, IBond> {
     return bond.isInRing();
   }
 
+  @Override
+  public boolean isInRing(int bondIdx)
+  {
+    return base.getBond(bondIdx).isInRing();
+  }
+
   @Override
   public int getAtomicNum(IAtom atom)
   {
@@ -165,7 +177,10 @@ public final class CdkMol extends BaseMol<IAtom, IBond> {
   @Override
   public void setAtomProp(IAtom atom, String key, Object val)
   {
-    atom.setProperty(key, val);
+    if (val != null)
+      atom.setProperty(key, val);
+    else
+      atom.removeProperty(key);
   }
 
   @Override
@@ -177,7 +192,10 @@ public final class CdkMol extends BaseMol<IAtom, IBond> {
   @Override
   public void setBondProp(IBond bond, String key, Object val)
   {
-    bond.setProperty(key, val);
+    if (val != null)
+      bond.setProperty(key, val);
+    else
+      bond.removeProperty(key);
   }
 
   @Override
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.simolecule.centres;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * The progress of a chunked {@link LabelCip} run, kept in a sidecar file
+ * next to the output so an interrupted run can be resumed. The input range
+ * is recorded so a checkpoint is not applied to a different file or shard.
+ */
+final class Checkpoint {
+
+  // input file size and the byte range processed
+  final long size;
+  final long begin;
+  final long end;
+  // input offset of the next record, number of records completed and the
+  // length of the output that has been written for them
+  long offset;
+  long records;
+  long output;
+
+  Checkpoint(long size, long begin, long end)
+  {
+    this.size = size;
+    this.begin = begin;
+    this.end = end;
+    this.offset = begin;
+  }
+
+  /**
+   * The sidecar file of an output file.
+   *
+   * @param output the output file
+   * @return the checkpoint file
+   */
+  static Path sidecar(Path output)
+  {
+    return output.resolveSibling(output.getFileName() + ".ckpt");
+  }
+
+  /**
+   * Does the checkpoint belong to the same input file and byte range.
+   */
+  boolean matches(Checkpoint that)
+  {
+    return size == that.size && begin == that.begin && end == that.end;
+  }
+
+  /**
+   * Load a checkpoint.
+   *
+   * @param path the checkpoint file
+   * @return the checkpoint, null if there is none
+   * @throws IOException the file could not be read or was invalid
+   */
+  static Checkpoint load(Path path) throws IOException
+  {
+    if (!Files.exists(path))
+      return null;
+    Properties props = new Properties();
+    try (Reader rdr = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      props.load(rdr);
+    }
+    try {
+      Checkpoint ckpt = new Checkpoint(Long.parseLong(props.getProperty("size")),
+                                       Long.parseLong(props.getProperty("begin")),
+                                       Long.parseLong(props.getProperty("end")));
+      ckpt.offset = Long.parseLong(props.getProperty("offset"));
+      ckpt.records = Long.parseLong(props.getProperty("records"));
+      ckpt.output = Long.parseLong(props.getProperty("output"));
+      return ckpt;
+    } catch (NumberFormatException e) {
+      throw new IOException("Invalid checkpoint: " + path);
+    }
+  }
+
+  /**
+   * Save the checkpoint, the file is replaced atomically so a crash leaves
+   * either the old or the new checkpoint.
+   *
+   * @param path the checkpoint file
+   * @throws IOException the file could not be written
+   */
+  void save(Path path) throws IOException
+  {
+    Properties props = new Properties();
+    props.setProperty("size", Long.toString(size));
+    props.setProperty("begin", Long.toString(begin));
+    props.setProperty("end", Long.toString(end));
+    props.setProperty("offset", Long.toString(offset));
+    props.setProperty("records", Long.toString(records));
+    props.setProperty("output", Long.toString(output));
+    Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+    try (Writer wtr = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+      props.store(wtr, null);
+    }
+    Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+}
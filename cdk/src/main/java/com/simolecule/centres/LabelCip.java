@@ -37,24 +37,79 @@ import org.openscience.cdk.silent.SilentChemObjectBuilder;
 import org.openscience.cdk.smiles.SmilesParser;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class LabelCip {
 
-  private static String fmt;
+  private String fmt;
   // the file name
-  private static String fname;
+  private String fname;
   // the SDfile property with expected values in it
-  private static String cipKey;
+  private String cipKey;
+  // number of worker threads
+  private int    numThreads = 1;
+  // where to write the slowest centres (.json or .csv)
+  private String profName;
+  // number of slowest centres to report
+  private int    profTop    = 20;
+  private SlowCentreProfiler<IAtom, IBond> profiler;
+  // labels with multiple threads, shared by every chunk
+  private BatchLabeller batch;
+  // output file, stdout if not set
+  private String outName;
+  // records per checkpointed chunk, 0 for no checkpoints
+  private int    chunkSize  = 0;
+  // continue from the checkpoint of a previous run
+  private boolean resume;
+  // the shard (1-based) of the input this process labels
+  private int    shard      = 1;
+  private int    numShards  = 1;
+  // buffered output, written through a channel
+  private Writer      out;
+  private FileChannel outChannel;
 
-  private static boolean processCommandLine(String[] args) {
+  private static final int OUT_BUFFER = 1 << 16;
+
+  private static final BatchLabeller.FailureHandler REPORT = new BatchLabeller.FailureHandler() {
+    @Override
+    public void parseFailed(Object record, RuntimeException e) {
+      System.err.println("ERROR - could not parse record, " + e.getMessage());
+    }
+
+    @Override
+    public void labelFailed(IAtomContainer mol, RuntimeException e) {
+      System.err.println("ERROR - could not label " + mol.getTitle() + ", " + e.getMessage());
+    }
+  };
+
+  private boolean processCommandLine(String[] args) {
     int j = 0;
     for (int i = 0; i < args.length; i++) {
       if (args[i].charAt(0) == '-') {
@@ -69,6 +124,68 @@ public class LabelCip {
           if (i >= args.length)
             return false;
           fmt = args[i];
+        } else if (args[i].equals("--threads") ||
+                   args[i].equals("-t")) {
+          ++i;
+          if (i >= args.length)
+            return false;
+          try {
+            numThreads = Integer.parseInt(args[i]);
+          } catch (NumberFormatException e) {
+            return false;
+          }
+          if (numThreads < 1)
+            return false;
+        } else if (args[i].equals("--profile")) {
+          ++i;
+          if (i >= args.length)
+            return false;
+          profName = args[i];
+        } else if (args[i].equals("--profile-top")) {
+          ++i;
+          if (i >= args.length)
+            return false;
+          try {
+            profTop = Integer.parseInt(args[i]);
+          } catch (NumberFormatException e) {
+            return false;
+          }
+          if (profTop < 1)
+            return false;
+        } else if (args[i].equals("--out") ||
+                   args[i].equals("-o")) {
+          ++i;
+          if (i >= args.length)
+            return false;
+          outName = args[i];
+        } else if (args[i].equals("--chunk")) {
+          ++i;
+          if (i >= args.length)
+            return false;
+          try {
+            chunkSize = Integer.parseInt(args[i]);
+          } catch (NumberFormatException e) {
+            return false;
+          }
+          if (chunkSize < 1)
+            return false;
+        } else if (args[i].equals("--resume")) {
+          resume = true;
+        } else if (args[i].equals("--shard")) {
+          ++i;
+          if (i >= args.length)
+            return false;
+          String[] parts = args[i].split("/");
+          if (parts.length != 2)
+            return false;
+          try {
+            shard = Integer.parseInt(parts[0]);
+            numShards = Integer.parseInt(parts[1]);
+          } catch (NumberFormatException e) {
+            return false;
+          }
+          if (numShards < 1 || shard < 1 || shard > numShards)
+            return false;
         }
       } else {
         switch (j++) {
@@ -80,6 +197,11 @@ public class LabelCip {
         }
       }
     }
+    // checkpoints are kept next to the output file
+    if (chunkSize > 0 && outName == null)
+      return false;
+    if (resume && chunkSize == 0)
+      return false;
     return fname != null;
   }
 
@@ -138,8 +260,35 @@ public class LabelCip {
     return sb.toString();
   }
 
-  private static void processMol(IAtomContainer mol) {
-    CdkLabeller.label(mol);
+  // as BatchLabeller, a record that can not be parsed is reported and
+  // skipped, a molecule that can not be labelled is reported and written
+  private <T> void processRecord(T record, Function<T, IAtomContainer> parser) {
+    IAtomContainer mol;
+    try {
+      mol = parser.apply(record);
+    } catch (RuntimeException e) {
+      REPORT.parseFailed(record, e);
+      return;
+    }
+    if (mol == null)
+      return;
+    try {
+      CdkLabeller.label(mol, LabellingBudget.DEFAULT, profiler);
+    } catch (RuntimeException e) {
+      REPORT.labelFailed(mol, e);
+    }
+    writeMol(mol);
+  }
+
+  private void writeMol(IAtomContainer mol) {
+    try {
+      appendMol(mol);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void appendMol(IAtomContainer mol) throws IOException {
     String actual = getCipKeys(mol);
     if (cipKey != null) {
       String expected = mol.getProperty(cipKey);
@@ -155,45 +304,182 @@ public class LabelCip {
           else
             diff.append(' ');
         }
-        System.out.println(mol.getTitle() + "\n" +
-                           "  expected=" + expected + "\n" +
-                           "       was=" + actual + "\n" +
-                           "           " + diff);
+        out.append(mol.getTitle()).append('\n')
+           .append("  expected=").append(expected).append('\n')
+           .append("       was=").append(actual).append('\n')
+           .append("           ").append(diff).append('\n');
+      }
+    } else {
+      out.append(actual).append('\t').append(mol.getTitle()).append('\n');
+    }
+  }
+
+  private void process(Iterator<IAtomContainer> iter) {
+    process(iter, Function.<IAtomContainer>identity());
+  }
+
+  private <T> void process(Iterator<T> iter, Function<T, IAtomContainer> parser) {
+    if (batch != null) {
+      try {
+        batch.process(iter, parser, new Consumer<IAtomContainer>() {
+          @Override
+          public void accept(IAtomContainer mol) {
+            writeMol(mol);
+          }
+        });
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
       }
     } else {
-      System.out.println(actual + "\t" + mol.getTitle());
+      while (iter.hasNext())
+        processRecord(iter.next(), parser);
     }
   }
 
-  private static void processSDfile(InputStream in) {
+  private void processSDfile(InputStream in) {
     IChemObjectBuilder bldr = SilentChemObjectBuilder.getInstance();
     try (IteratingSDFReader sdfr = new IteratingSDFReader(in, bldr, true)) {
-      while (sdfr.hasNext()) {
-        processMol(sdfr.next());
-      }
+      process(sdfr);
     } catch (IOException e) {
       System.err.println("ERROR - IO Error, " + e.getMessage());
     }
   }
 
-  private static void processSMIfile(InputStream in) {
+  private static final Function<ByteBuffer, IAtomContainer> SD_RECORD_PARSER = new Function<ByteBuffer, IAtomContainer>() {
+    @Override
+    public IAtomContainer apply(ByteBuffer record) {
+      IChemObjectBuilder bldr = SilentChemObjectBuilder.getInstance();
+      try (IteratingSDFReader sdfr = new IteratingSDFReader(SdfRecordSplitter.openStream(record), bldr, true)) {
+        return sdfr.hasNext() ? sdfr.next() : null;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  };
+
+  // shard k covers the records that start in [offset(k-1), offset(k))
+  private long shardOffset(long size, int k) {
+    return k >= numShards ? size : size / numShards * k;
+  }
+
+  /**
+   * Process an SD file by memory-mapping it, the records are split on the
+   * reader thread and parsed by the workers. Only the records of this
+   * process' shard are labelled, the outputs of shards 1..N concatenated in
+   * order are the same as the output of a single run.
+   */
+  private void processMappedSDfile(Path path) {
+    try {
+      long size = Files.size(path);
+      long beg  = SdfRecordSplitter.findRecordStart(path, shardOffset(size, shard - 1));
+      long end  = SdfRecordSplitter.findRecordStart(path, shardOffset(size, shard));
+      if (chunkSize > 0) {
+        Path       ckptPath = Checkpoint.sidecar(Paths.get(outName));
+        Checkpoint ckpt     = new Checkpoint(size, beg, end);
+        Checkpoint prev     = resume ? Checkpoint.load(ckptPath) : null;
+        if (prev != null) {
+          if (!prev.matches(ckpt)) {
+            System.err.println("ERROR - checkpoint does not match the input: " + ckptPath);
+            return;
+          }
+          ckpt = prev;
+          System.err.println("Resuming after " + ckpt.records + " records");
+        }
+        // discard output written after the checkpoint
+        outChannel.truncate(ckpt.output);
+        outChannel.position(ckpt.output);
+        try (SdfRecordSplitter splitter = new SdfRecordSplitter(path, ckpt.offset, end)) {
+          processChunks(splitter, ckpt, ckptPath);
+        }
+      } else {
+        try (SdfRecordSplitter splitter = new SdfRecordSplitter(path, beg, end)) {
+          process(splitter, SD_RECORD_PARSER);
+        }
+      }
+    } catch (IOException | UncheckedIOException e) {
+      System.err.println("ERROR - IO Error, " + e.getMessage());
+    }
+  }
+
+  /**
+   * Label the records in chunks, after each chunk the output is flushed to
+   * disk and then the checkpoint is saved, a run that dies can be resumed
+   * from the last complete chunk.
+   */
+  private void processChunks(SdfRecordSplitter splitter,
+                             Checkpoint ckpt,
+                             Path ckptPath) throws IOException {
+    List<ByteBuffer> chunk = new ArrayList<>(chunkSize);
+    while (splitter.hasNext()) {
+      chunk.clear();
+      while (chunk.size() < chunkSize && splitter.hasNext())
+        chunk.add(splitter.next());
+      process(chunk.iterator(), SD_RECORD_PARSER);
+      // the chunk may not be complete
+      if (Thread.currentThread().isInterrupted())
+        return;
+      out.flush();
+      outChannel.force(false);
+      ckpt.offset = splitter.getPosition();
+      ckpt.records += chunk.size();
+      ckpt.output = outChannel.position();
+      ckpt.save(ckptPath);
+    }
+  }
+
+  /**
+   * Iterate over the molecules of a SMILES file, bad SMILES are reported
+   * and skipped.
+   */
+  private static final class SmilesIterator implements Iterator<IAtomContainer> {
+
+    private final BufferedReader rdr;
+    private final SmilesParser   smipar;
+    private       IAtomContainer next;
+
+    private SmilesIterator(BufferedReader rdr, SmilesParser smipar) {
+      this.rdr = rdr;
+      this.smipar = smipar;
+    }
+
+    @Override
+    public boolean hasNext() {
+      try {
+        String line;
+        while (next == null && (line = rdr.readLine()) != null) {
+          try {
+            IAtomContainer mol = smipar.parseSmiles(line);
+            String[] cols = mol.getTitle().split("\t");
+            for (int i = 0; i < cols.length; i++)
+              mol.setProperty(Integer.toString(i), cols[i]);
+            next = mol;
+          } catch (InvalidSmilesException e) {
+            System.err.println("ERROR: BAD SMILES\n" + e.getMessage());
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return next != null;
+    }
+
+    @Override
+    public IAtomContainer next() {
+      if (!hasNext())
+        throw new NoSuchElementException();
+      IAtomContainer mol = next;
+      next = null;
+      return mol;
+    }
+  }
+
+  private void processSMIfile(InputStream in) {
     IChemObjectBuilder bldr   = SilentChemObjectBuilder.getInstance();
     SmilesParser       smipar = new SmilesParser(bldr);
     try (Reader rdr = new InputStreamReader(in);
          BufferedReader brdr = new BufferedReader(rdr)) {
-      String line;
-      while ((line = brdr.readLine()) != null) {
-        try {
-          IAtomContainer mol = smipar.parseSmiles(line);
-          String[] cols = mol.getTitle().split("\t");
-          for (int i = 0; i < cols.length; i++)
-            mol.setProperty(Integer.toString(i), cols[i]);
-          processMol(mol);
-        } catch (InvalidSmilesException e) {
-          System.err.println("ERROR: BAD SMILES\n" + e.getMessage());
-        }
-      }
-    } catch (IOException e) {
+      process(new SmilesIterator(brdr, smipar));
+    } catch (IOException | UncheckedIOException e) {
       System.err.println("ERROR - IO Error, " + e.getMessage());
     }
   }
@@ -225,24 +511,88 @@ public class LabelCip {
     return false;
   }
 
-  public static void main(String[] args) {
+  private void writeProfile() {
+    try (Writer wtr = new OutputStreamWriter(new FileOutputStream(profName),
+                                             StandardCharsets.UTF_8)) {
+      if (getSuffix(profName).equalsIgnoreCase("json"))
+        profiler.writeJson(wtr);
+      else
+        profiler.writeCsv(wtr);
+    } catch (IOException e) {
+      System.err.println("ERROR - could not write profile: " + profName + ", " + e.getMessage());
+    }
+  }
+
+  // the options and output are per run, main may be called more than once
+  private void run(String[] args) {
     if (!processCommandLine(args)) {
-      System.err.println("Usage: label {input.sdf}");
+      System.err.println("Usage: label [--threads N] [--profile {out.csv|out.json}] [--profile-top N]\n" +
+                         "             [--out FILE [--chunk N [--resume]]] [--shard i/N] {input.sdf}");
+      return;
+    }
+
+    if ((numShards > 1 || chunkSize > 0) && !isSDfile(fname)) {
+      System.err.println("ERROR - chunks and shards require an SD file");
       return;
     }
 
-    if (fname.equals("-"))
-      processSDfile(System.in);
-    else {
-      try (InputStream in = new FileInputStream(fname)) {
-        if (isSDfile(fname))
-          processSDfile(in);
-        else if (isSmilesFile(fname))
-          processSMIfile(in);
+    if (profName != null)
+      profiler = new SlowCentreProfiler<>(profTop);
+
+    try {
+      if (outName != null) {
+        if (resume)
+          outChannel = FileChannel.open(Paths.get(outName), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        else
+          outChannel = FileChannel.open(Paths.get(outName), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                        StandardOpenOption.TRUNCATE_EXISTING);
+      } else {
+        outChannel = new FileOutputStream(FileDescriptor.out).getChannel();
+      }
+    } catch (IOException e) {
+      System.err.println("Could not open file: " + outName + ", " + e.getMessage());
+      return;
+    }
+    out = new BufferedWriter(Channels.newWriter(outChannel,
+                                                StandardCharsets.UTF_8.newEncoder(),
+                                                OUT_BUFFER),
+                             OUT_BUFFER);
+    if (numThreads > 1) {
+      batch = new BatchLabeller(numThreads);
+      batch.setListener(profiler);
+      batch.setFailureHandler(REPORT);
+    }
+    try {
+      if (fname.equals("-"))
+        processSDfile(System.in);
+      else if (isSDfile(fname))
+        processMappedSDfile(Paths.get(fname));
+      else {
+        try (InputStream in = new FileInputStream(fname)) {
+          if (isSmilesFile(fname))
+            processSMIfile(in);
+        } catch (IOException e) {
+          System.err.println("Could not open file: " + fname + ", " + e.getMessage());
+        }
+      }
+    } finally {
+      if (batch != null)
+        batch.close();
+      try {
+        out.flush();
+        if (outName != null)
+          outChannel.close();
       } catch (IOException e) {
-        System.err.println("Could not open file: " + fname + ", " + e.getMessage());
+        System.err.println("ERROR - could not write output, " + e.getMessage());
       }
     }
+
+    if (profiler != null)
+      writeProfile();
+  }
+
+  public static void main(String[] args) {
+    new LabelCip().run(args);
   }
 
 
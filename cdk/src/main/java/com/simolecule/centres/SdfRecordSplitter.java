@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.simolecule.centres;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Splits an SD file into its records by memory-mapping the file and scanning
+ * for the {@code $$$$} delimiter lines. Each record is a read-only view of
+ * the mapping, no bytes are copied until the record is parsed, so records
+ * can be handed to other threads for parsing (see
+ * {@link BatchLabeller#process(Iterator, java.util.function.Function, java.util.function.Consumer)}).
+ * The file is mapped in windows so files larger than 2 GB are supported.
+ */
+public final class SdfRecordSplitter implements Iterator<ByteBuffer>, Closeable {
+
+  private static final int DEFAULT_WINDOW = 1 << 28;
+  private static final int MAX_WINDOW     = 1 << 30;
+
+  private final FileChannel channel;
+  private final long        size;
+  private final long        end;
+  private       int         window;
+
+  private MappedByteBuffer buf;
+  // file offset of buf[0]
+  private long             bufOffset;
+  // file offset of the next record
+  private long             pos;
+  // file offset of the end of the last record returned by next()
+  private long             consumed;
+  private ByteBuffer       next;
+
+  /**
+   * Split all the records of the file.
+   *
+   * @param path the SD file
+   * @throws IOException the file could not be opened
+   */
+  public SdfRecordSplitter(Path path) throws IOException
+  {
+    this(FileChannel.open(path, StandardOpenOption.READ), 0, Long.MAX_VALUE, DEFAULT_WINDOW);
+  }
+
+  /**
+   * Split the records that start in the byte range [beg, end) of the file,
+   * beg must be the start of a record.
+   *
+   * @param path the SD file
+   * @param beg  first byte (inclusive)
+   * @param end  last byte (exclusive)
+   * @throws IOException the file could not be opened
+   */
+  public SdfRecordSplitter(Path path, long beg, long end) throws IOException
+  {
+    this(FileChannel.open(path, StandardOpenOption.READ), beg, end, DEFAULT_WINDOW);
+  }
+
+  SdfRecordSplitter(FileChannel channel, long beg, long end, int window) throws IOException
+  {
+    if (beg < 0 || beg > end)
+      throw new IllegalArgumentException("Invalid byte range");
+    this.channel = channel;
+    this.size = channel.size();
+    this.end = Math.min(end, size);
+    this.window = window;
+    this.pos = beg;
+    this.consumed = beg;
+  }
+
+  /**
+   * The file offset just past the last record returned by {@link #next()},
+   * i.e. where reading would resume.
+   *
+   * @return the file offset
+   */
+  public long getPosition()
+  {
+    return consumed;
+  }
+
+  private void map(long offset) throws IOException
+  {
+    bufOffset = offset;
+    buf = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(window, size - offset));
+  }
+
+  private static boolean isDelim(ByteBuffer buf, int beg, int end)
+  {
+    return end - beg >= 4 &&
+           buf.get(beg) == '$' &&
+           buf.get(beg + 1) == '$' &&
+           buf.get(beg + 2) == '$' &&
+           buf.get(beg + 3) == '$';
+  }
+
+  private static boolean isBlank(ByteBuffer buf, int beg, int end)
+  {
+    for (int i = beg; i < end; i++) {
+      if (buf.get(i) > ' ')
+        return false;
+    }
+    return true;
+  }
+
+  private ByteBuffer slice(int beg, int end)
+  {
+    ByteBuffer dup = buf.duplicate();
+    dup.position(beg);
+    dup.limit(end);
+    return dup.slice().asReadOnlyBuffer();
+  }
+
+  private ByteBuffer findNext() throws IOException
+  {
+    while (pos < end) {
+      if (buf == null || pos < bufOffset || pos >= bufOffset + buf.limit())
+        map(pos);
+
+      int beg = (int) (pos - bufOffset);
+      int lim = buf.limit();
+      int line = beg;
+      for (int i = beg; i < lim; i++) {
+        if (buf.get(i) != '\n')
+          continue;
+        if (isDelim(buf, line, i)) {
+          pos = bufOffset + i + 1;
+          return slice(beg, i + 1);
+        }
+        line = i + 1;
+      }
+
+      // the last record may not be terminated
+      if (bufOffset + lim == size) {
+        pos = size;
+        if (isBlank(buf, beg, lim))
+          return null;
+        return slice(beg, lim);
+      }
+
+      // record spans the window, remap starting at the record
+      if (beg == 0) {
+        if (window >= MAX_WINDOW)
+          throw new IOException("SD record at offset " + pos + " is too large");
+        window = Math.min(MAX_WINDOW, 2 * window);
+      }
+      map(pos);
+    }
+    return null;
+  }
+
+  @Override
+  public boolean hasNext()
+  {
+    if (next == null) {
+      try {
+        next = findNext();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return next != null;
+  }
+
+  @Override
+  public ByteBuffer next()
+  {
+    if (!hasNext())
+      throw new NoSuchElementException();
+    ByteBuffer rec = next;
+    next = null;
+    consumed = pos;
+    return rec;
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    buf = null;
+    channel.close();
+  }
+
+  /**
+   * Find the start of the first record at or after a file offset. Records
+   * belong to the byte range they start in, so a file split at the aligned
+   * offsets is divided into disjoint runs of whole records.
+   *
+   * @param path   the SD file
+   * @param offset the file offset
+   * @return the offset of the record start, or the file size if no record
+   *         starts at or after the offset
+   * @throws IOException the file could not be read
+   */
+  public static long findRecordStart(Path path, long offset) throws IOException
+  {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (offset <= 0)
+        return 0;
+      if (offset >= size)
+        return size;
+      // split from the start of the line before the offset, the line may be
+      // a delimiter that ends at the offset
+      SdfRecordSplitter splitter = new SdfRecordSplitter(channel,
+                                                         findLineStart(channel, offset - 1),
+                                                         size,
+                                                         DEFAULT_WINDOW);
+      while (splitter.getPosition() < offset && splitter.hasNext())
+        splitter.next();
+      return splitter.getPosition() >= offset ? splitter.getPosition() : size;
+    }
+  }
+
+  // start of the line that contains the byte at pos
+  private static long findLineStart(FileChannel channel, long pos) throws IOException
+  {
+    ByteBuffer tmp = ByteBuffer.allocate(4096);
+    long       end = pos;
+    while (end > 0) {
+      long beg = Math.max(0, end - tmp.capacity());
+      tmp.clear();
+      tmp.limit((int) (end - beg));
+      while (tmp.hasRemaining()) {
+        if (channel.read(tmp, beg + tmp.position()) < 0)
+          break;
+      }
+      for (int i = tmp.position() - 1; i >= 0; i--) {
+        if (tmp.get(i) == '\n')
+          return beg + i + 1;
+      }
+      end = beg;
+    }
+    return 0;
+  }
+
+  /**
+   * Open an input stream over a record returned by {@link #next()}.
+   *
+   * @param record the record
+   * @return the input stream
+   */
+  public static InputStream openStream(ByteBuffer record)
+  {
+    return new RecordInputStream(record.duplicate());
+  }
+
+  private static final class RecordInputStream extends InputStream {
+
+    private final ByteBuffer buf;
+
+    private RecordInputStream(ByteBuffer buf)
+    {
+      this.buf = buf;
+    }
+
+    @Override
+    public int read()
+    {
+      return buf.hasRemaining() ? buf.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+    {
+      if (len == 0)
+        return 0;
+      if (!buf.hasRemaining())
+        return -1;
+      len = Math.min(len, buf.remaining());
+      buf.get(b, off, len);
+      return len;
+    }
+
+    @Override
+    public int available()
+    {
+      return buf.remaining();
+    }
+  }
+}
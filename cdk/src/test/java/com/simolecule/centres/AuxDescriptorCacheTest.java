@@ -0,0 +1,57 @@
+package com.simolecule.centres;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.exception.InvalidSmilesException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import java.util.Collections;
+
+public class AuxDescriptorCacheTest {
+
+  private static final SmilesParser smipar = new SmilesParser(SilentChemObjectBuilder.getInstance());
+
+  private static ConcurrentMetrics label(String smi) throws InvalidSmilesException {
+    IAtomContainer    mol      = smipar.parseSmiles(smi);
+    ConcurrentMetrics metrics  = new ConcurrentMetrics();
+    CdkLabeller       labeller = new CdkLabeller();
+    labeller.setMetrics(metrics);
+    labeller.label(new CdkMol(mol), CdkLabeller.createConfigs(mol));
+    return metrics;
+  }
+
+  @Test public void auxCacheSameLabels() throws InvalidSmilesException {
+    // the outer centres are decided by their second sphere and are the
+    // auxiliary descriptors of the pseudo-asymmetric middle centre
+    String            smi     = "OC(=O)[C@H](O)[C@@H](O)[C@H](O)C(=O)O";
+    ConcurrentMetrics metrics = label(smi);
+    Assert.assertEquals(2, metrics.getNumAuxCacheHits());
+    Assert.assertEquals(0, metrics.getNumAuxCacheMisses());
+    IAtomContainer mol1 = smipar.parseSmiles(smi);
+    IAtomContainer mol2 = smipar.parseSmiles(smi);
+    CdkLabeller labeller = new CdkLabeller();
+    labeller.label(new CdkMol(mol1), CdkLabeller.createConfigs(mol1));
+    labeller.setAuxDescriptorCache(false);
+    labeller.label(new CdkMol(mol2), CdkLabeller.createConfigs(mol2));
+    for (int i = 0; i < mol1.getAtomCount(); i++)
+      Assert.assertEquals(mol2.getAtom(i).getProperty(BaseMol.CIP_LABEL_KEY, Descriptor.class),
+                          mol1.getAtom(i).getProperty(BaseMol.CIP_LABEL_KEY, Descriptor.class));
+  }
+
+  @Test public void auxCacheNotUsedWhenRecording() throws InvalidSmilesException {
+    // a cached descriptor does not expand the atoms it depends on, they
+    // would be missing from the record
+    IAtomContainer    mol      = smipar.parseSmiles("OC(=O)[C@H](O)[C@@H](O)[C@H](O)C(=O)O");
+    ConcurrentMetrics metrics  = new ConcurrentMetrics();
+    CdkLabeller       labeller = new CdkLabeller();
+    labeller.setMetrics(metrics);
+    labeller.relabel(new CdkMol(mol), CdkLabeller.createConfigs(mol),
+                     Collections.<IAtom>emptySet(), new LabellingRecord<IAtom, IBond>());
+    Assert.assertEquals(0, metrics.getNumAuxCacheHits());
+    Assert.assertEquals(Descriptor.s, mol.getAtom(5).getProperty(BaseMol.CIP_LABEL_KEY));
+  }
+}
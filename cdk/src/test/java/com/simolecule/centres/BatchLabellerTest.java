@@ -0,0 +1,125 @@
+package com.simolecule.centres;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.exception.InvalidSmilesException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+public class BatchLabellerTest {
+
+  private static final String[] SMILES = new String[]{
+          "C[C@H](O)CC",
+          "C[C@@H](O)CC",
+          "C/C=C/CC",
+          "C/C=C\\CC",
+          "O[C@H]1O[C@@]2(O[C@H]1O)O[C@H]([C@H](O2)O)O",
+          "C[C@H](CCCC(C)C)[C@H]1CC[C@@H]2[C@@]1(CC[C@H]3[C@H]2CC=C4[C@@]3(CC[C@@H](C4)O)C)C"
+  };
+
+  @Test public void inputOrder() throws InvalidSmilesException, InterruptedException {
+    SmilesParser         smipar = new SmilesParser(SilentChemObjectBuilder.getInstance());
+    List<IAtomContainer> input  = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      IAtomContainer mol = smipar.parseSmiles(SMILES[i % SMILES.length]);
+      mol.setTitle(Integer.toString(i));
+      input.add(mol);
+    }
+
+    final List<IAtomContainer> output = new ArrayList<>();
+    new BatchLabeller(4, 8, LabellingBudget.DEFAULT).process(input.iterator(), new Consumer<IAtomContainer>() {
+      @Override
+      public void accept(IAtomContainer mol)
+      {
+        output.add(mol);
+      }
+    });
+
+    Assert.assertEquals(input.size(), output.size());
+    for (int i = 0; i < input.size(); i++) {
+      Assert.assertEquals(Integer.toString(i), output.get(i).getTitle());
+      IAtomContainer expected = smipar.parseSmiles(SMILES[i % SMILES.length]);
+      CdkLabeller.label(expected);
+      for (int j = 0; j < expected.getAtomCount(); j++)
+        Assert.assertEquals(expected.getAtom(j).getProperty(BaseMol.CIP_LABEL_KEY, Descriptor.class),
+                            output.get(i).getAtom(j).getProperty(BaseMol.CIP_LABEL_KEY, Descriptor.class));
+    }
+  }
+
+  @Test(timeout = 10000) public void readerErrorIsRethrown() throws InterruptedException {
+    Iterator<IAtomContainer> reader = new Iterator<IAtomContainer>() {
+      @Override
+      public boolean hasNext()
+      {
+        return true;
+      }
+
+      @Override
+      public IAtomContainer next()
+      {
+        throw new StackOverflowError();
+      }
+    };
+    try {
+      new BatchLabeller(2).process(reader, new Consumer<IAtomContainer>() {
+        @Override
+        public void accept(IAtomContainer mol)
+        {
+        }
+      });
+      Assert.fail("reader error was not rethrown");
+    } catch (StackOverflowError e) {
+      // expected
+    }
+  }
+
+  @Test public void parseFailures() throws InterruptedException {
+    final List<Object>         failed = new ArrayList<>();
+    final List<IAtomContainer> output = new ArrayList<>();
+    BatchLabeller              batch  = new BatchLabeller(2);
+    batch.setFailureHandler(new BatchLabeller.FailureHandler() {
+      @Override
+      public void parseFailed(Object record, RuntimeException e)
+      {
+        synchronized (failed) {
+          failed.add(record);
+        }
+      }
+
+      @Override
+      public void labelFailed(IAtomContainer mol, RuntimeException e)
+      {
+      }
+    });
+    batch.process(Arrays.asList("C[C@H](O)CC", "bad", "C/C=C/C").iterator(),
+                  new Function<String, IAtomContainer>() {
+                    @Override
+                    public IAtomContainer apply(String smi)
+                    {
+                      try {
+                        return new SmilesParser(SilentChemObjectBuilder.getInstance()).parseSmiles(smi);
+                      } catch (InvalidSmilesException e) {
+                        throw new IllegalArgumentException(e);
+                      }
+                    }
+                  },
+                  new Consumer<IAtomContainer>() {
+                    @Override
+                    public void accept(IAtomContainer mol)
+                    {
+                      output.add(mol);
+                    }
+                  });
+    Assert.assertEquals(Collections.<Object>singletonList("bad"), failed);
+    Assert.assertEquals(2, output.size());
+  }
+}
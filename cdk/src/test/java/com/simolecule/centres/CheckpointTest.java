@@ -0,0 +1,129 @@
+package com.simolecule.centres;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+
+public class CheckpointTest {
+
+  private static final String[] MOLFILES = {"r_sarin.mol", "ChEBI_2639.mol", "ChEBI_3049.mol",
+                                            "ChEBI_10642.mol", "ChEBI_2955.mol"};
+
+  @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static String molfile(String name) throws IOException {
+    try (InputStream in = CheckpointTest.class.getResourceAsStream("/uk/ac/ebi/centres/cdk/" + name);
+         Scanner scanner = new Scanner(in, "UTF-8")) {
+      return scanner.useDelimiter("\\A").next();
+    }
+  }
+
+  // an SD file of the test molfiles titled mol0, mol1, ...
+  private Path sdfile() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < MOLFILES.length; i++) {
+      String molfile = molfile(MOLFILES[i]);
+      sb.append("mol").append(i).append(molfile.substring(molfile.indexOf('\n')));
+      if (sb.charAt(sb.length() - 1) != '\n')
+        sb.append('\n');
+      sb.append("$$$$\n");
+    }
+    Path path = tmp.newFile("input.sdf").toPath();
+    Files.write(path, sb.toString().getBytes(StandardCharsets.UTF_8));
+    return path;
+  }
+
+  @Test public void saveAndLoad() throws IOException {
+    Path       path = tmp.getRoot().toPath().resolve("out.txt.ckpt");
+    Checkpoint ckpt = new Checkpoint(1000, 100, 900);
+    ckpt.offset = 450;
+    ckpt.records = 12;
+    ckpt.output = 321;
+    ckpt.save(path);
+    Checkpoint loaded = Checkpoint.load(path);
+    Assert.assertNotNull(loaded);
+    Assert.assertEquals(1000, loaded.size);
+    Assert.assertEquals(100, loaded.begin);
+    Assert.assertEquals(900, loaded.end);
+    Assert.assertEquals(450, loaded.offset);
+    Assert.assertEquals(12, loaded.records);
+    Assert.assertEquals(321, loaded.output);
+    Assert.assertFalse(Files.exists(path.resolveSibling("out.txt.ckpt.tmp")));
+  }
+
+  @Test public void loadMissing() throws IOException {
+    Assert.assertNull(Checkpoint.load(tmp.getRoot().toPath().resolve("none.ckpt")));
+  }
+
+  @Test(expected = IOException.class)
+  public void loadInvalid() throws IOException {
+    Path path = tmp.newFile("bad.ckpt").toPath();
+    Files.write(path, "size=1\nbegin=x\n".getBytes(StandardCharsets.UTF_8));
+    Checkpoint.load(path);
+  }
+
+  @Test public void sidecar() {
+    Path out = tmp.getRoot().toPath().resolve("labels.txt");
+    Assert.assertEquals(out.resolveSibling("labels.txt.ckpt"), Checkpoint.sidecar(out));
+  }
+
+  @Test public void matches() {
+    Checkpoint ckpt = new Checkpoint(1000, 100, 900);
+    ckpt.offset = 450;
+    Assert.assertTrue(ckpt.matches(new Checkpoint(1000, 100, 900)));
+    Assert.assertFalse(ckpt.matches(new Checkpoint(1001, 100, 900)));
+    Assert.assertFalse(ckpt.matches(new Checkpoint(1000, 0, 900)));
+    Assert.assertFalse(ckpt.matches(new Checkpoint(1000, 100, 1000)));
+  }
+
+  /**
+   * Simulate a run that died after the first chunk (and had written part of
+   * the next), resuming it gives the same output as a run that completed.
+   */
+  @Test public void resume() throws IOException {
+    Path input = sdfile();
+    Path full  = tmp.getRoot().toPath().resolve("full.txt");
+    Path part  = tmp.getRoot().toPath().resolve("part.txt");
+
+    LabelCip.main(new String[]{"-t", "1", "--out", full.toString(), "--chunk", "2", input.toString()});
+    List<String> expected = Files.readAllLines(full, StandardCharsets.UTF_8);
+    Assert.assertEquals(MOLFILES.length, expected.size());
+    Checkpoint done = Checkpoint.load(Checkpoint.sidecar(full));
+    Assert.assertNotNull(done);
+    Assert.assertEquals(MOLFILES.length, done.records);
+    Assert.assertEquals(Files.size(input), done.offset);
+
+    // the first chunk of two records completed
+    long size = Files.size(input);
+    Checkpoint ckpt = new Checkpoint(size,
+                                     SdfRecordSplitter.findRecordStart(input, 0),
+                                     SdfRecordSplitter.findRecordStart(input, size));
+    try (SdfRecordSplitter splitter = new SdfRecordSplitter(input, ckpt.begin, ckpt.end)) {
+      splitter.next();
+      splitter.next();
+      ckpt.offset = splitter.getPosition();
+    }
+    byte[] written = (expected.get(0) + "\n" + expected.get(1) + "\n").getBytes(StandardCharsets.UTF_8);
+    ckpt.records = 2;
+    ckpt.output = written.length;
+    ckpt.save(Checkpoint.sidecar(part));
+    Files.write(part, Arrays.copyOf(written, written.length + 7));
+
+    LabelCip.main(new String[]{"-t", "2", "--out", part.toString(), "--chunk", "2", "--resume", input.toString()});
+    Assert.assertEquals(expected, Files.readAllLines(part, StandardCharsets.UTF_8));
+    Checkpoint resumed = Checkpoint.load(Checkpoint.sidecar(part));
+    Assert.assertNotNull(resumed);
+    Assert.assertEquals(MOLFILES.length, resumed.records);
+    Assert.assertEquals(Files.size(part), resumed.output);
+  }
+}
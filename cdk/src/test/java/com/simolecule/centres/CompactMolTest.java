@@ -0,0 +1,74 @@
+package com.simolecule.centres;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.exception.InvalidSmilesException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import java.util.Iterator;
+
+public class CompactMolTest {
+
+  // cholesterol
+  private static final String SMILES = "C[C@H](CCCC(C)C)[C@H]1CC[C@@H]2[C@@]1(CC[C@H]3[C@H]2CC=C4[C@@]3(CC[C@@H](C4)O)C)C";
+
+  private static final SmilesParser smipar = new SmilesParser(SilentChemObjectBuilder.getInstance());
+
+  @Test public void sameAdjacency() throws InvalidSmilesException {
+    CdkMol                   mol     = new CdkMol(smipar.parseSmiles(SMILES));
+    CompactMol<IAtom, IBond> compact = new CompactMol<>(mol);
+    Assert.assertEquals(mol.getNumAtoms(), compact.getNumAtoms());
+    Assert.assertEquals(mol.getNumBonds(), compact.getNumBonds());
+    for (IAtom atom : mol.atoms()) {
+      Assert.assertEquals(mol.getAtomIdx(atom), compact.getAtomIdx(atom));
+      Assert.assertEquals(mol.getNumHydrogens(atom), compact.getNumHydrogens(atom));
+      Iterator<IBond> expected = mol.getBonds(atom).iterator();
+      Iterator<IBond> actual   = compact.getBonds(atom).iterator();
+      while (expected.hasNext()) {
+        IBond bond = expected.next();
+        Assert.assertSame(bond, actual.next());
+        Assert.assertSame(mol.getOther(bond, atom), compact.getOther(bond, atom));
+        Assert.assertEquals(mol.getBondOrder(bond), compact.getBondOrder(bond));
+        Assert.assertEquals(mol.isInRing(bond), compact.isInRing(bond));
+      }
+      Assert.assertFalse(actual.hasNext());
+    }
+  }
+
+  @Test public void indexAccessors() throws InvalidSmilesException {
+    CdkMol                   mol     = new CdkMol(smipar.parseSmiles(SMILES));
+    CompactMol<IAtom, IBond> compact = new CompactMol<>(mol);
+    for (int i = 0; i < mol.getNumAtoms(); i++) {
+      IAtom atom = mol.getAtom(i);
+      int   k    = 0;
+      for (IBond bond : mol.getBonds(atom)) {
+        for (BaseMol<IAtom, IBond> m : new BaseMol[]{mol, compact}) {
+          Assert.assertEquals(mol.getAtomIdx(bond.getOther(atom)), m.getNbr(i, k));
+          Assert.assertEquals(mol.getBondIdx(bond), m.getNbrBond(i, k));
+          Assert.assertEquals(mol.getBondOrder(bond), m.getBondOrder(i, k));
+          Assert.assertEquals(bond.isInRing(), m.isInRing(m.getNbrBond(i, k)));
+        }
+        k++;
+      }
+      Assert.assertEquals(k, mol.getDegree(i));
+      Assert.assertEquals(k, compact.getDegree(i));
+    }
+  }
+
+  @Test public void sameLabels() throws InvalidSmilesException {
+    IAtomContainer expected = smipar.parseSmiles(SMILES);
+    IAtomContainer actual   = smipar.parseSmiles(SMILES);
+    CdkLabeller.label(expected);
+    CdkLabeller labeller = new CdkLabeller();
+    labeller.setCompactView(true);
+    labeller.label(new CdkMol(actual), CdkLabeller.createConfigs(actual));
+    for (int i = 0; i < expected.getAtomCount(); i++) {
+      Assert.assertEquals(expected.getAtom(i).getProperty(BaseMol.CIP_LABEL_KEY, Descriptor.class),
+                          actual.getAtom(i).getProperty(BaseMol.CIP_LABEL_KEY, Descriptor.class));
+    }
+  }
+}
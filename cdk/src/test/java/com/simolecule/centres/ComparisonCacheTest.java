@@ -0,0 +1,56 @@
+package com.simolecule.centres;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.exception.InvalidSmilesException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import java.util.List;
+
+public class ComparisonCacheTest {
+
+  private static final SmilesParser smipar = new SmilesParser(SilentChemObjectBuilder.getInstance());
+
+  @Test public void invalidatedOnChange() throws InvalidSmilesException {
+    IAtomContainer        mol     = smipar.parseSmiles("CC[C@H](O)CCC");
+    Digraph<IAtom, IBond> digraph = new Digraph<>(new CdkMol(mol));
+    Node<IAtom, IBond>    root    = digraph.init(mol.getAtom(2));
+    List<Edge<IAtom, IBond>> edges = root.getEdges();
+    ComparisonCache<IAtom, IBond> cache = digraph.getComparisonCache();
+    Object rule = new Object();
+
+    cache.put(rule, edges.get(0), edges.get(1), true, -1, digraph.getVersion());
+    Assert.assertEquals(-1, cache.get(rule, edges.get(0), edges.get(1), true));
+    Assert.assertEquals(ComparisonCache.MISSING, cache.get(rule, edges.get(0), edges.get(1), false));
+    Assert.assertEquals(ComparisonCache.MISSING, cache.get(rule, edges.get(1), edges.get(0), true));
+
+    // re-rooting to the current root does not change anything
+    digraph.changeRoot(root);
+    Assert.assertEquals(-1, cache.get(rule, edges.get(0), edges.get(1), true));
+
+    edges.get(0).getEnd().setAux(Descriptor.R);
+    Assert.assertEquals(ComparisonCache.MISSING, cache.get(rule, edges.get(0), edges.get(1), true));
+
+    cache.put(rule, edges.get(0), edges.get(1), true, -1, digraph.getVersion());
+    digraph.changeRoot(edges.get(0).getEnd());
+    Assert.assertEquals(ComparisonCache.MISSING, cache.get(rule, edges.get(0), edges.get(1), true));
+  }
+
+  @Test public void staleComparisonNotStored() throws InvalidSmilesException {
+    IAtomContainer        mol     = smipar.parseSmiles("CC[C@H](O)CCC");
+    Digraph<IAtom, IBond> digraph = new Digraph<>(new CdkMol(mol));
+    Node<IAtom, IBond>    root    = digraph.init(mol.getAtom(2));
+    List<Edge<IAtom, IBond>> edges = root.getEdges();
+    ComparisonCache<IAtom, IBond> cache = digraph.getComparisonCache();
+    Object rule = new Object();
+
+    int version = digraph.getVersion();
+    edges.get(0).getEnd().setAux(Descriptor.R);
+    cache.put(rule, edges.get(0), edges.get(1), true, -1, version);
+    Assert.assertEquals(ComparisonCache.MISSING, cache.get(rule, edges.get(0), edges.get(1), true));
+  }
+}
@@ -0,0 +1,50 @@
+package com.simolecule.centres;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.exception.InvalidSmilesException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+public class ConcurrentMetricsTest {
+
+  private static final SmilesParser smipar = new SmilesParser(SilentChemObjectBuilder.getInstance());
+
+  private static ConcurrentMetrics label(String smi) throws InvalidSmilesException {
+    IAtomContainer    mol      = smipar.parseSmiles(smi);
+    ConcurrentMetrics metrics  = new ConcurrentMetrics();
+    CdkLabeller       labeller = new CdkLabeller();
+    labeller.setMetrics(metrics);
+    labeller.label(new CdkMol(mol), CdkLabeller.createConfigs(mol));
+    return metrics;
+  }
+
+  @Test public void countsPerRun() throws InvalidSmilesException {
+    ConcurrentMetrics metrics = label("C[C@H](O)CC");
+    Assert.assertEquals(1, metrics.getNumConfigs());
+    Assert.assertEquals(1, metrics.getNumLabelled());
+    Assert.assertEquals(1, metrics.getRuleCount(0));
+    // labelled by the pre-pass, no digraph
+    Assert.assertEquals(0, metrics.getDigraphNodes().getCount());
+    Assert.assertEquals(1, metrics.getConfigsPerMol().getCount(1));
+  }
+
+  @Test public void merge() throws InvalidSmilesException {
+    ConcurrentMetrics metrics = label("C[C@H](O)CC");
+    metrics.merge(label("C/C=C/C"));
+    Assert.assertEquals(2, metrics.getNumConfigs());
+    Assert.assertEquals(2, metrics.getNumLabelled());
+    Assert.assertEquals(2, metrics.getRuleCount(0));
+    Assert.assertEquals(1, metrics.getDigraphNodes().getCount());
+    Assert.assertEquals(1, metrics.getNumPrePassHits());
+  }
+
+  @Test public void histogramPercentile() {
+    Histogram histogram = new Histogram();
+    for (int i = 1; i <= 100; i++)
+      histogram.add(i);
+    Assert.assertEquals(100, histogram.getCount());
+    Assert.assertEquals(50, histogram.getPercentile(50));
+  }
+}
@@ -0,0 +1,82 @@
+package com.simolecule.centres;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.exception.InvalidSmilesException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class IsotopeTest {
+
+  private static final SmilesParser smipar = new SmilesParser(SilentChemObjectBuilder.getInstance());
+
+  // the hash lookup the dense table replaced
+  private static final Map<List<Integer>, Isotope> OLD = new HashMap<>();
+
+  static {
+    for (Isotope isotope : Isotope.values())
+      OLD.put(Arrays.asList(isotope.getAtomicNum(), isotope.getMassNum()), isotope);
+  }
+
+  private static double oldWeight(int atomnum, int massnum) {
+    Isotope isotope = OLD.get(Arrays.asList(atomnum, massnum));
+    return isotope != null ? isotope.getWeight() : massnum;
+  }
+
+  private static Descriptor label(String smi) throws InvalidSmilesException {
+    IAtomContainer mol = smipar.parseSmiles(smi);
+    CdkLabeller.label(mol);
+    return mol.getAtom(1).getProperty(BaseMol.CIP_LABEL_KEY);
+  }
+
+  @Test public void sameAsHashLookup() {
+    for (int atomnum = -1; atomnum <= 120; atomnum++) {
+      for (int massnum = -1; massnum <= 300; massnum++) {
+        String msg = atomnum + "/" + massnum;
+        Assert.assertSame(msg, OLD.get(Arrays.asList(atomnum, massnum)), Isotope.find(atomnum, massnum));
+        Assert.assertEquals(msg, oldWeight(atomnum, massnum), Isotope.getWeight(atomnum, massnum), 0);
+      }
+    }
+  }
+
+  @Test public void sameRanks() {
+    // unset mass numbers, isotopes below, above and inside (but missing
+    // from) the range of the table, and unknown elements
+    final int[][] isotopes = {{6, 0}, {6, 11}, {6, 12}, {6, 13}, {6, 14}, {6, 300},
+                              {1, 0}, {1, 2}, {1, 3}, {92, 0}, {92, 233}, {92, 236},
+                              {92, 238}, {92, 240}, {119, 0}, {119, 300}, {0, 0}};
+    List<int[]> expected = new ArrayList<>(Arrays.asList(isotopes));
+    List<int[]> actual   = new ArrayList<>(Arrays.asList(isotopes));
+    Collections.sort(expected, new Comparator<int[]>() {
+      @Override
+      public int compare(int[] a, int[] b) {
+        return Double.compare(oldWeight(a[0], a[1]), oldWeight(b[0], b[1]));
+      }
+    });
+    Collections.sort(actual, new Comparator<int[]>() {
+      @Override
+      public int compare(int[] a, int[] b) {
+        return Double.compare(Isotope.getWeight(a[0], a[1]), Isotope.getWeight(b[0], b[1]));
+      }
+    });
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test public void massNumberOutsideTable() throws InvalidSmilesException {
+    // 11C and 14C are not in the table, their weight is the mass number so
+    // they rank below and above an unlabelled carbon
+    Assert.assertNotNull(label("C[C@H](O)[11CH3]"));
+    Assert.assertEquals(label("[14CH3][C@H](O)C"), label("C[C@H](O)[11CH3]"));
+    Assert.assertNotEquals(label("C[C@H](O)[14CH3]"), label("C[C@H](O)[11CH3]"));
+    Assert.assertEquals(label("C[C@H](O)[13CH3]"), label("C[C@H](O)[14CH3]"));
+  }
+}
@@ -0,0 +1,55 @@
+package com.simolecule.centres;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.exception.InvalidSmilesException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+public class LabellingBudgetTest {
+
+  private static final SmilesParser smipar = new SmilesParser(SilentChemObjectBuilder.getInstance());
+
+  // the two branches only differ at the end of the chains
+  private static final String SMILES = "CCCCCCCCCCCC[C@H](O)CCCCCCCCCCCCC";
+
+  @Test public void withinBudget() throws InvalidSmilesException {
+    IAtomContainer mol = smipar.parseSmiles(SMILES);
+    CdkLabeller.label(mol, LabellingBudget.DEFAULT);
+    Assert.assertEquals(Descriptor.S, mol.getAtom(12).getProperty(BaseMol.CIP_LABEL_KEY));
+  }
+
+  @Test public void nodeCountExceeded() throws InvalidSmilesException {
+    IAtomContainer mol = smipar.parseSmiles(SMILES);
+    CdkLabeller.label(mol, LabellingBudget.DEFAULT.withMaxNodes(50));
+    Assert.assertEquals(Descriptor.BudgetExceeded, mol.getAtom(12).getProperty(BaseMol.CIP_LABEL_KEY));
+  }
+
+  @Test public void depthExceeded() throws InvalidSmilesException {
+    IAtomContainer mol = smipar.parseSmiles(SMILES);
+    CdkLabeller.label(mol, LabellingBudget.UNLIMITED.withMaxDepth(5));
+    Assert.assertEquals(Descriptor.BudgetExceeded, mol.getAtom(12).getProperty(BaseMol.CIP_LABEL_KEY));
+  }
+
+  @Test public void memoryExceeded() throws InvalidSmilesException {
+    IAtomContainer mol = smipar.parseSmiles(SMILES);
+    CdkLabeller.label(mol, LabellingBudget.UNLIMITED.withMaxBytes(4096));
+    Assert.assertEquals(Descriptor.BudgetExceeded, mol.getAtom(12).getProperty(BaseMol.CIP_LABEL_KEY));
+  }
+
+  @Test public void deadlineCheckedWhileComparing() throws InvalidSmilesException {
+    // the deadline is also checked when no nodes are being expanded
+    Digraph<IAtom, IBond> digraph = new Digraph<>(new CdkMol(smipar.parseSmiles(SMILES)));
+    digraph.setBudget(LabellingBudget.UNLIMITED.withMaxMillis(1), System.nanoTime() - 1);
+    try {
+      for (int i = 0; i < 256; i++)
+        digraph.checkDeadline();
+      Assert.fail("deadline was not checked");
+    } catch (BudgetExceededException e) {
+      Assert.assertEquals(BudgetExceededException.Limit.Time, e.getLimit());
+    }
+  }
+}
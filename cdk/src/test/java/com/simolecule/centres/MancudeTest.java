@@ -0,0 +1,70 @@
+package com.simolecule.centres;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.exception.InvalidSmilesException;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+public class MancudeTest {
+
+  private static final SmilesParser smipar = new SmilesParser(SilentChemObjectBuilder.getInstance());
+
+  private static String atomNums(String smi) throws InvalidSmilesException {
+    CdkMol           mol = new CdkMol(smipar.parseSmiles(smi));
+    Mancude.AtomNums nums = Mancude.calcAtomNums(mol);
+    StringBuilder    sb  = new StringBuilder();
+    for (int i = 0; i < mol.getNumAtoms(); i++) {
+      if (sb.length() != 0)
+        sb.append(' ');
+      sb.append(nums.getNum(i)).append('/').append(nums.getDen(i));
+      Assert.assertEquals(nums.getNum(i), mol.getAtomicNumNumerator(i));
+      Assert.assertEquals(nums.getDen(i), mol.getAtomicNumDenominator(i));
+    }
+    return sb.toString();
+  }
+
+  @Test public void pyridine() throws InvalidSmilesException {
+    Assert.assertEquals("12/2 12/2 13/2 12/2 13/2 12/2", atomNums("c1ccncc1"));
+  }
+
+  @Test public void cyclopentadienide() throws InvalidSmilesException {
+    Assert.assertEquals("24/5 24/5 24/5 24/5 24/5", atomNums("c1cc[cH-]c1"));
+  }
+
+  @Test public void benzene() throws InvalidSmilesException {
+    Assert.assertEquals("6/1 6/1 6/1 6/1 6/1 6/1", atomNums("c1ccccc1"));
+  }
+
+  @SuppressWarnings("deprecation")
+  @Test public void deprecatedTypes() throws InvalidSmilesException {
+    CdkMol         mol   = new CdkMol(smipar.parseSmiles("c1cc[cH-]c1.C1=CCCCC1"));
+    Mancude.Type[] types = new Mancude.Type[mol.getNumAtoms()];
+    Assert.assertTrue(Mancude.SeedTypes(types, mol));
+    Assert.assertEquals(Mancude.Type.Cv3D3Minus, types[3]);
+    Assert.assertEquals(Mancude.Type.Cv4D4, types[5]);
+    Mancude.RelaxTypes(types, mol);
+    Assert.assertEquals(Mancude.Type.Cv3D3Minus, types[3]);
+    Assert.assertEquals(Mancude.Type.Other, types[5]);
+    int[] parts = new int[mol.getNumAtoms()];
+    Assert.assertEquals(1, Mancude.VisitParts(parts, types, mol));
+    Assert.assertEquals(1, parts[0]);
+    Assert.assertEquals(0, parts[5]);
+  }
+
+  @Test public void fractionCompare() {
+    Assert.assertEquals(0, Mancude.Fraction.compare(12, 2, 6, 1));
+    Assert.assertEquals(-1, Mancude.Fraction.compare(12, 2, 13, 2));
+    Assert.assertEquals(+1, Mancude.Fraction.compare(24, 5, 4, 1));
+  }
+
+  @Test public void ranks() throws InvalidSmilesException {
+    CdkMol           mol  = new CdkMol(smipar.parseSmiles("c1ccncc1"));
+    Mancude.AtomNums nums = Mancude.calcAtomNums(mol);
+    Assert.assertEquals(0, nums.getRank(0));
+    Assert.assertEquals(nums.getRank(6), nums.getFracRank(0));
+    Assert.assertTrue(nums.getFracRank(2) > nums.getRank(6));
+    Assert.assertTrue(nums.getFracRank(2) < nums.getRank(7));
+    Assert.assertEquals(-1, Mancude.calcAtomNums(new CdkMol(smipar.parseSmiles("c1ccccc1"))).getFracRank(0));
+  }
+}
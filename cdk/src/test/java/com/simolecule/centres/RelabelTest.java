@@ -0,0 +1,139 @@
+package com.simolecule.centres;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.exception.InvalidSmilesException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IStereoElement;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class RelabelTest {
+
+  private static final SmilesParser smipar = new SmilesParser(SilentChemObjectBuilder.getInstance());
+
+  // centres at atoms 1 and 15, far apart
+  private static final String SMILES = "C[C@H](O)CCCCCCCCCCCC[C@H](O)CC";
+
+  private static void invert(IAtomContainer mol, IAtom focus) {
+    for (IStereoElement se : mol.stereoElements()) {
+      if (se.getFocus() == focus)
+        se.setConfigOrder(se.getConfigOrder() ^ 0x3);
+    }
+  }
+
+  // label of every atom and bond the same as a fresh labelling
+  private static void assertSameLabels(IAtomContainer expected, IAtomContainer actual) {
+    for (int i = 0; i < expected.getAtomCount(); i++)
+      Assert.assertEquals(expected.getAtom(i).getProperty(BaseMol.CIP_LABEL_KEY, Descriptor.class),
+                          actual.getAtom(i).getProperty(BaseMol.CIP_LABEL_KEY, Descriptor.class));
+    for (int i = 0; i < expected.getBondCount(); i++)
+      Assert.assertEquals(expected.getBond(i).getProperty(BaseMol.CIP_LABEL_KEY, Descriptor.class),
+                          actual.getBond(i).getProperty(BaseMol.CIP_LABEL_KEY, Descriptor.class));
+  }
+
+  private static void removeStereo(IAtomContainer mol, IAtom focus) {
+    List<IStereoElement> keep = new ArrayList<>();
+    for (IStereoElement se : mol.stereoElements()) {
+      if (se.getFocus() != focus)
+        keep.add(se);
+    }
+    mol.setStereoElements(keep);
+  }
+
+  private static IAtom addMethyl(IAtomContainer mol, IAtom atom) {
+    IAtom methyl = mol.getBuilder().newInstance(IAtom.class, "C");
+    methyl.setImplicitHydrogenCount(3);
+    mol.addAtom(methyl);
+    mol.addBond(mol.indexOf(atom), mol.getAtomCount() - 1, IBond.Order.SINGLE);
+    atom.setImplicitHydrogenCount(atom.getImplicitHydrogenCount() - 1);
+    return mol.getAtom(mol.getAtomCount() - 1);
+  }
+
+  @Test public void reuseUnchanged() throws InvalidSmilesException {
+    IAtomContainer                mol    = smipar.parseSmiles(SMILES);
+    LabellingRecord<IAtom, IBond> record = new LabellingRecord<>();
+    CdkLabeller.relabel(mol, Collections.<IAtom>emptySet(), record);
+    Descriptor first  = mol.getAtom(1).getProperty(BaseMol.CIP_LABEL_KEY);
+    Descriptor second = mol.getAtom(15).getProperty(BaseMol.CIP_LABEL_KEY);
+    Assert.assertEquals(2, record.getNumLabelled());
+
+    invert(mol, mol.getAtom(15));
+    CdkLabeller.relabel(mol, Collections.singleton(mol.getAtom(15)), record);
+    Assert.assertEquals(1, record.getNumReused());
+    Assert.assertEquals(1, record.getNumLabelled());
+    Assert.assertEquals(first, mol.getAtom(1).getProperty(BaseMol.CIP_LABEL_KEY));
+    Assert.assertNotEquals(second, mol.getAtom(15).getProperty(BaseMol.CIP_LABEL_KEY));
+  }
+
+  @Test public void relabelReached() throws InvalidSmilesException {
+    IAtomContainer                mol    = smipar.parseSmiles(SMILES);
+    LabellingRecord<IAtom, IBond> record = new LabellingRecord<>();
+    CdkLabeller.relabel(mol, Collections.<IAtom>emptySet(), record);
+    // the hydroxy of the first centre is reached only by its digraph
+    CdkLabeller.relabel(mol, Collections.singleton(mol.getAtom(2)), record);
+    Assert.assertEquals(1, record.getNumReused());
+    Assert.assertEquals(1, record.getNumLabelled());
+  }
+
+  @Test public void removedCentre() throws InvalidSmilesException {
+    IAtomContainer                mol    = smipar.parseSmiles(SMILES);
+    LabellingRecord<IAtom, IBond> record = new LabellingRecord<>();
+    CdkLabeller.relabel(mol, Collections.<IAtom>emptySet(), record);
+    Assert.assertNotNull(mol.getAtom(15).getProperty(BaseMol.CIP_LABEL_KEY));
+
+    removeStereo(mol, mol.getAtom(15));
+    CdkLabeller.relabel(mol, Collections.singleton(mol.getAtom(15)), record);
+    IAtomContainer expected = smipar.parseSmiles(SMILES);
+    removeStereo(expected, expected.getAtom(15));
+    CdkLabeller.label(expected);
+    assertSameLabels(expected, mol);
+    Assert.assertNull(mol.getAtom(15).getProperty(BaseMol.CIP_LABEL_KEY));
+  }
+
+  @Test public void noLongerStereogenic() throws InvalidSmilesException {
+    IAtomContainer                mol    = smipar.parseSmiles("C[C@H](CC)CCC");
+    LabellingRecord<IAtom, IBond> record = new LabellingRecord<>();
+    CdkLabeller.relabel(mol, Collections.<IAtom>emptySet(), record);
+    Assert.assertNotNull(mol.getAtom(1).getProperty(BaseMol.CIP_LABEL_KEY));
+
+    // ethyl to propyl, the centre has two propyl ligands
+    IAtom methyl = addMethyl(mol, mol.getAtom(3));
+    CdkLabeller.relabel(mol, Arrays.asList(mol.getAtom(3), methyl), record);
+    IAtomContainer expected = smipar.parseSmiles("C[C@H](CC)CCC");
+    addMethyl(expected, expected.getAtom(3));
+    CdkLabeller.label(expected);
+    assertSameLabels(expected, mol);
+    Assert.assertNull(mol.getAtom(1).getProperty(BaseMol.CIP_LABEL_KEY));
+  }
+
+  @Test public void addedMethyl() throws InvalidSmilesException {
+    IAtomContainer                mol    = smipar.parseSmiles("C[C@H](CC)CCC");
+    LabellingRecord<IAtom, IBond> record = new LabellingRecord<>();
+    CdkLabeller.relabel(mol, Collections.<IAtom>emptySet(), record);
+    Descriptor before = mol.getAtom(1).getProperty(BaseMol.CIP_LABEL_KEY);
+
+    // ethyl to isopropyl, which now ranks above the propyl
+    IAtom methyl = addMethyl(mol, mol.getAtom(2));
+    CdkLabeller.relabel(mol, Arrays.asList(mol.getAtom(2), methyl), record);
+    IAtomContainer expected = smipar.parseSmiles("C[C@H](CC)CCC");
+    addMethyl(expected, expected.getAtom(2));
+    CdkLabeller.label(expected);
+    assertSameLabels(expected, mol);
+    Assert.assertNotEquals(before, mol.getAtom(1).getProperty(BaseMol.CIP_LABEL_KEY));
+  }
+
+  @Test public void recordNotKeptOnMolecule() throws InvalidSmilesException {
+    IAtomContainer mol      = smipar.parseSmiles(SMILES);
+    int            numProps = mol.getProperties().size();
+    CdkLabeller.relabel(mol, Collections.<IAtom>emptySet(), new LabellingRecord<IAtom, IBond>());
+    Assert.assertEquals(numProps, mol.getProperties().size());
+  }
+}
@@ -0,0 +1,86 @@
+package com.simolecule.centres;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SdfRecordSplitterTest {
+
+  @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+  private List<String> split(String content, int window) throws IOException {
+    Path path = tmp.newFile().toPath();
+    Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    List<String> records = new ArrayList<>();
+    try (SdfRecordSplitter splitter = new SdfRecordSplitter(FileChannel.open(path), 0, Long.MAX_VALUE, window)) {
+      while (splitter.hasNext()) {
+        ByteBuffer record = splitter.next();
+        byte[]     bytes  = new byte[record.remaining()];
+        record.get(bytes);
+        records.add(new String(bytes, StandardCharsets.UTF_8));
+      }
+    }
+    return records;
+  }
+
+  @Test public void records() throws IOException {
+    String content = "mol1\n  M  END\n$$$$\nmol2\r\n  M  END\r\n$$$$\r\n";
+    List<String> records = split(content, 1 << 16);
+    Assert.assertEquals(2, records.size());
+    Assert.assertEquals("mol1\n  M  END\n$$$$\n", records.get(0));
+    Assert.assertEquals("mol2\r\n  M  END\r\n$$$$\r\n", records.get(1));
+  }
+
+  @Test public void recordsSpanWindows() throws IOException {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 20; i++)
+      content.append("mol").append(i).append("\n  M  END\n$$$$\n");
+    List<String> records = split(content.toString(), 8);
+    Assert.assertEquals(20, records.size());
+    Assert.assertEquals("mol19\n  M  END\n$$$$\n", records.get(19));
+  }
+
+  @Test public void shardsPartitionRecords() throws IOException {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 50; i++) {
+      content.append("mol").append(i).append('\n');
+      for (int j = 0; j < i % 7; j++)
+        content.append("  $$$$ not a delimiter\n");
+      content.append("$$$$\n");
+    }
+    Path path = tmp.newFile().toPath();
+    Files.write(path, content.toString().getBytes(StandardCharsets.UTF_8));
+    long size = Files.size(path);
+    for (int n = 1; n <= 9; n++) {
+      int  count = 0;
+      long prev  = 0;
+      for (int k = 1; k <= n; k++) {
+        long end = SdfRecordSplitter.findRecordStart(path, k == n ? size : size / n * k);
+        try (SdfRecordSplitter splitter = new SdfRecordSplitter(path, prev, end)) {
+          while (splitter.hasNext()) {
+            String record = StandardCharsets.UTF_8.decode(splitter.next()).toString();
+            Assert.assertTrue(record.startsWith("mol" + count + "\n"));
+            count++;
+          }
+        }
+        prev = end;
+      }
+      Assert.assertEquals(50, count);
+    }
+  }
+
+  @Test public void unterminated() throws IOException {
+    Assert.assertEquals(2, split("mol1\n$$$$\nmol2\n  M  END\n", 1 << 16).size());
+    Assert.assertEquals(1, split("mol1\n$$$$\n\n  \n", 1 << 16).size());
+  }
+}
@@ -0,0 +1,39 @@
+package com.simolecule.centres;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import java.io.StringWriter;
+
+public class SlowCentreProfilerTest {
+
+  private static final SmilesParser smipar = new SmilesParser(SilentChemObjectBuilder.getInstance());
+
+  @Test public void profilerTraces() throws Exception {
+    IAtomContainer                   mol      = smipar.parseSmiles("OC(=O)[C@H](O)[C@@H](O)[C@H](O)C(=O)O");
+    SlowCentreProfiler<IAtom, IBond> profiler = new SlowCentreProfiler<>(5);
+    CdkLabeller.label(mol, LabellingBudget.DEFAULT, profiler);
+    Assert.assertEquals(3, profiler.getNumTraced());
+    Assert.assertEquals(3, profiler.getSlowest().size());
+    for (SlowCentreProfiler.Entry e : profiler.getSlowest()) {
+      LabelTrace trace = e.getTrace();
+      if (e.getAtoms()[0] == 5) {
+        Assert.assertEquals(Descriptor.s, trace.getDescriptor());
+        Assert.assertFalse(trace.isPrePass());
+        Assert.assertEquals(2, trace.getNumAux());
+        Assert.assertEquals(2, trace.getNumAuxCacheHits());
+      } else {
+        Assert.assertTrue(trace.isPrePass());
+        Assert.assertEquals(0, trace.getNumNodes());
+      }
+    }
+    StringWriter sw = new StringWriter();
+    profiler.writeJson(sw);
+    Assert.assertTrue(sw.toString().startsWith("["));
+  }
+}
@@ -0,0 +1,65 @@
+package com.simolecule.centres;
+
+import com.simolecule.centres.config.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.exception.InvalidSmilesException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import java.util.List;
+
+public class TetrahedralPrePassTest {
+
+  private static final SmilesParser smipar = new SmilesParser(SilentChemObjectBuilder.getInstance());
+
+  private static ConcurrentMetrics label(String smi) throws InvalidSmilesException {
+    IAtomContainer    mol      = smipar.parseSmiles(smi);
+    ConcurrentMetrics metrics  = new ConcurrentMetrics();
+    CdkLabeller       labeller = new CdkLabeller();
+    labeller.setMetrics(metrics);
+    labeller.label(new CdkMol(mol), CdkLabeller.createConfigs(mol));
+    return metrics;
+  }
+
+  @Test public void prePassKeepsDigraph() throws InvalidSmilesException {
+    IAtomContainer                    mol     = smipar.parseSmiles("C[C@H](O)CC");
+    List<Configuration<IAtom, IBond>> configs = CdkLabeller.createConfigs(mol);
+    new CdkLabeller().label(new CdkMol(mol), configs);
+    // labelled by the pre-pass, the digraph is expanded on demand
+    Digraph<IAtom, IBond> digraph = configs.get(0).getDigraph();
+    Assert.assertEquals(1, digraph.getNumNodes());
+    Assert.assertEquals(mol.getAtom(1), digraph.getRoot().getAtom());
+    Assert.assertEquals(4, digraph.getRoot().getEdges().size());
+  }
+
+  @Test public void prePassHitRate() throws InvalidSmilesException {
+    // second centre needs the third sphere: CH(CH3)CH2CH3 vs CH(CH3)CH2OH
+    ConcurrentMetrics metrics = label("C[C@H](O)CC.CC[C@@H](C(C)CC)C(C)CO");
+    Assert.assertEquals(2, metrics.getNumPrePassed());
+    Assert.assertEquals(1, metrics.getNumPrePassHits());
+    Assert.assertEquals(0.5, metrics.getPrePassHitRate(), 0.001);
+    Assert.assertEquals(2, metrics.getNumLabelled());
+    Assert.assertEquals(1, metrics.getDigraphNodes().getCount());
+  }
+
+  @Test public void prePassSameLabels() throws InvalidSmilesException {
+    String[] smis = {"C[C@H](O)CC", "N[C@@H](Cc1ccccc1)C(=O)O", "O=[S@](C)CC",
+                     "C[C@@H](C=C)C(C)C", "CC[C@@H](C(C)CC)C(C)CO"};
+    for (String smi : smis) {
+      IAtomContainer mol1 = smipar.parseSmiles(smi);
+      IAtomContainer mol2 = smipar.parseSmiles(smi);
+      CdkLabeller labeller = new CdkLabeller();
+      labeller.label(new CdkMol(mol1), CdkLabeller.createConfigs(mol1));
+      labeller.setConstitutionalPrePass(false);
+      labeller.label(new CdkMol(mol2), CdkLabeller.createConfigs(mol2));
+      for (int i = 0; i < mol1.getAtomCount(); i++)
+        Assert.assertEquals(smi,
+                            mol2.getAtom(i).getProperty(BaseMol.CIP_LABEL_KEY, Descriptor.class),
+                            mol1.getAtom(i).getProperty(BaseMol.CIP_LABEL_KEY, Descriptor.class));
+    }
+  }
+}
@@ -0,0 +1,15 @@
+package com.simolecule.centres;
+
+/**
+ * Runs the validation suite with the compact digraph storage.
+ */
+public class ValidateCdkCompactTest extends ValidateCdkTest {
+
+  @Override
+  protected CdkLabeller createLabeller()
+  {
+    CdkLabeller labeller = new CdkLabeller();
+    labeller.setDigraphStorage(Digraph.Storage.Compact);
+    return labeller;
+  }
+}
@@ -0,0 +1,18 @@
+package com.simolecule.centres;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs the validation suite labelling the configurations of each molecule in
+ * parallel.
+ */
+public class ValidateCdkParallelTest extends ValidateCdkTest {
+
+  @Override
+  protected CdkLabeller createLabeller()
+  {
+    CdkLabeller labeller = new CdkLabeller();
+    labeller.setExecutor(ForkJoinPool.commonPool());
+    return labeller;
+  }
+}
@@ -0,0 +1,15 @@
+package com.simolecule.centres;
+
+/**
+ * Runs the validation suite with the parent chain digraph ancestry.
+ */
+public class ValidateCdkParentChainTest extends ValidateCdkTest {
+
+  @Override
+  protected CdkLabeller createLabeller()
+  {
+    CdkLabeller labeller = new CdkLabeller();
+    labeller.setDigraphAncestry(Digraph.Ancestry.ParentChain);
+    return labeller;
+  }
+}
@@ -0,0 +1,15 @@
+package com.simolecule.centres;
+
+/**
+ * Runs the validation suite with the path bit set digraph ancestry.
+ */
+public class ValidateCdkPathBitSetTest extends ValidateCdkTest {
+
+  @Override
+  protected CdkLabeller createLabeller()
+  {
+    CdkLabeller labeller = new CdkLabeller();
+    labeller.setDigraphAncestry(Digraph.Ancestry.PathBitSet);
+    return labeller;
+  }
+}
@@ -42,12 +42,17 @@ public class ValidateCdkTest extends AbstractValidationSuite {
 
   private static final SmilesParser smigen = new SmilesParser(SilentChemObjectBuilder.getInstance());
 
+  protected CdkLabeller createLabeller()
+  {
+    return new CdkLabeller();
+  }
+
   @Test
   public void testAssignment() throws Exception
   {
     IAtomContainer base = smigen.parseSmiles(expected.getSmiles());
     CdkMol         mol  = new CdkMol(base);
-    new CdkLabeller().label(mol, CdkLabeller.createConfigs(base));
+    createLabeller().label(mol, CdkLabeller.createConfigs(base));
     check(mol, new GenSmiles() {
       @Override
       public String generate(BaseMol mol)
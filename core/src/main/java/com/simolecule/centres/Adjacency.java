@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.simolecule.centres;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Integer adjacency of a molecule in compressed sparse row form, the
+ * neighbours of atom i are at offset[i] .. offset[i+1]. The neighbours are
+ * in the order the molecule lists the bonds of each atom. Used by the index
+ * accessors of {@link BaseMol} and by {@link CompactMol}.
+ */
+final class Adjacency {
+
+  private final int[] offset;
+  private final int[] nbr;
+  private final int[] bond;
+  private final int[] order;
+
+  <A, B> Adjacency(BaseMol<A, B> mol)
+  {
+    this(mol, atomIndex(mol), bondIndex(mol));
+  }
+
+  /**
+   * Build the adjacency with the atom and bond indices precomputed, the
+   * toolkit's own index lookup may be a linear search.
+   *
+   * @param mol     the molecule
+   * @param atomIdx index of each atom
+   * @param bondIdx index of each bond
+   */
+  <A, B> Adjacency(BaseMol<A, B> mol, Map<A, Integer> atomIdx, Map<B, Integer> bondIdx)
+  {
+    final int numAtoms = mol.getNumAtoms();
+    final int numBonds = mol.getNumBonds();
+    final int[] beg = new int[numBonds];
+    final int[] end = new int[numBonds];
+    for (int i = 0; i < numBonds; i++) {
+      B b = mol.getBond(i);
+      beg[i] = atomIdx.get(mol.getBeg(b));
+      end[i] = atomIdx.get(mol.getEnd(b));
+    }
+    offset = new int[numAtoms + 1];
+    for (int i = 0; i < numAtoms; i++) {
+      int deg = 0;
+      for (B ignored : mol.getBonds(mol.getAtom(i)))
+        deg++;
+      offset[i + 1] = offset[i] + deg;
+    }
+    nbr = new int[offset[numAtoms]];
+    bond = new int[offset[numAtoms]];
+    order = new int[offset[numAtoms]];
+    for (int i = 0; i < numAtoms; i++) {
+      int pos = offset[i];
+      for (B b : mol.getBonds(mol.getAtom(i))) {
+        int bidx = bondIdx.get(b);
+        nbr[pos] = beg[bidx] == i ? end[bidx] : beg[bidx];
+        bond[pos] = bidx;
+        order[pos] = mol.getBondOrder(b);
+        pos++;
+      }
+    }
+  }
+
+  static <A, B> Map<A, Integer> atomIndex(BaseMol<A, B> mol)
+  {
+    Map<A, Integer> idx = new HashMap<>(2 * mol.getNumAtoms());
+    for (int i = 0; i < mol.getNumAtoms(); i++)
+      idx.put(mol.getAtom(i), i);
+    return idx;
+  }
+
+  static <A, B> Map<B, Integer> bondIndex(BaseMol<A, B> mol)
+  {
+    Map<B, Integer> idx = new HashMap<>(2 * mol.getNumBonds());
+    for (int i = 0; i < mol.getNumBonds(); i++)
+      idx.put(mol.getBond(i), i);
+    return idx;
+  }
+
+  int getDegree(int atomIdx)
+  {
+    return offset[atomIdx + 1] - offset[atomIdx];
+  }
+
+  int getNbr(int atomIdx, int k)
+  {
+    return nbr[offset[atomIdx] + k];
+  }
+
+  int getBond(int atomIdx, int k)
+  {
+    return bond[offset[atomIdx] + k];
+  }
+
+  int getBondOrder(int atomIdx, int k)
+  {
+    return order[offset[atomIdx] + k];
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.simolecule.centres;
+
+import com.simolecule.centres.config.Configuration;
+import com.simolecule.centres.config.Tetrahedral;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Auxiliary descriptors of the configurations of a molecule that are proven
+ * not to depend on the root of the digraph they are found in, these are
+ * calculated once and reused in the digraph of every centre. A cache may be
+ * shared between threads.
+ *
+ * A tetrahedral centre with only single bonds whose ligands are separated
+ * by their atomic numbers has the same auxiliary descriptor everywhere. If
+ * the next sphere is needed the descriptor is only reused where none of the
+ * ligands are ring closures and the root of the digraph is not close enough
+ * to have suppressed any bond order duplicates in that sphere (the root
+ * atom has no duplicates for its own bonds).
+ *
+ * @see Tetrahedral#labelFirstSpheres(BaseMol, int)
+ */
+final class AuxDescriptorCache<A, B> {
+
+  private final BaseMol<A, B>               mol;
+  private final List<Configuration<A, B>>   configs;
+  private final AtomicReferenceArray<Entry> entries;
+
+  private static final Entry NONE = new Entry(null, null);
+
+  private static final class Entry {
+    private final Descriptor near, far;
+
+    private Entry(Descriptor near, Descriptor far)
+    {
+      this.near = near;
+      this.far = far;
+    }
+  }
+
+  AuxDescriptorCache(BaseMol<A, B> mol, List<Configuration<A, B>> configs)
+  {
+    this.mol = mol;
+    this.configs = configs;
+    this.entries = new AtomicReferenceArray<>(configs.size());
+  }
+
+  /**
+   * The auxiliary descriptor of a configuration at a node if it does not
+   * depend on the root.
+   *
+   * @param configIdx index of the configuration
+   * @param node      the node the configuration is being labelled at
+   * @return the descriptor, null if it may depend on the root
+   */
+  Descriptor get(int configIdx, Node<A, B> node)
+  {
+    Entry entry = entries.get(configIdx);
+    if (entry == null) {
+      // safe to compute more than once if labelling in parallel
+      entry = NONE;
+      Configuration<A, B> config = configs.get(configIdx);
+      if (config instanceof Tetrahedral) {
+        Tetrahedral<A, B> tc   = (Tetrahedral<A, B>) config;
+        Descriptor        near = tc.labelFirstSpheres(mol, 1);
+        Descriptor        far  = near == null ? tc.labelFirstSpheres(mol, 2) : null;
+        if (near != null || far != null)
+          entry = new Entry(near, far);
+      }
+      entries.set(configIdx, entry);
+    }
+    if (entry.near != null)
+      return entry.near;
+    if (entry.far != null && isSecondSphereSame(node))
+      return entry.far;
+    return null;
+  }
+
+  private boolean isSecondSphereSame(Node<A, B> node)
+  {
+    for (Edge<A, B> edge : node.getEdges()) {
+      if (edge.getOther(node).isSet(Node.RING_DUPLICATE))
+        return false;
+    }
+    Digraph<A, B> digraph = node.getDigraph();
+    int           root    = mol.getAtomIdx(digraph.getAtomFocus());
+    int           focus   = node.getAtomIdx();
+    if (root == focus)
+      return false;
+    if (!hasBondDuplicates(root))
+      return true;
+    // the root must be more than two bonds away
+    for (int i = 0; i < mol.getDegree(focus); i++) {
+      int nbr = mol.getNbr(focus, i);
+      if (nbr == root)
+        return false;
+      for (int j = 0; j < mol.getDegree(nbr); j++) {
+        if (mol.getNbr(nbr, j) == root)
+          return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean hasBondDuplicates(int atomIdx)
+  {
+    if (mol.getAtomicNumDenominator(atomIdx) > 1)
+      return true;
+    for (int i = 0; i < mol.getDegree(atomIdx); i++) {
+      if (mol.getBondOrder(atomIdx, i) > 1)
+        return true;
+    }
+    return false;
+  }
+}
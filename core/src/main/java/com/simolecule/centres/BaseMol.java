@@ -39,13 +39,24 @@ import java.util.Iterator;
  */
 public abstract class BaseMol<A, B> {
 
-  private Fraction[] atomnums;
+  private volatile Mancude.AtomNums atomnums;
+  private volatile Adjacency        adjacency;
+  private volatile double[]         isotopeWeights;
 
   public static final String CIP_LABEL_KEY = "cip.label";
   public static final String CONF_INDEX    = "conf.index";
 
   public abstract Object getBaseImpl();
 
+  /**
+   * The title of the molecule, used in reports.
+   *
+   * @return the title, null if it has none
+   */
+  public String getTitle() {
+    return null;
+  }
+
   public abstract int getNumAtoms();
 
   public abstract int getNumBonds();
@@ -100,20 +111,133 @@ public abstract class BaseMol<A, B> {
 
   public abstract int getAtomicNum(A atom);
 
-  public Fraction getFractionalAtomicNum(A atom) {
+  Mancude.AtomNums getAtomNums() {
+    // safe to compute more than once if labelling in parallel, the result
+    // is immutable so is safely published through the volatile field
+    Mancude.AtomNums atomnums = this.atomnums;
     if (atomnums == null)
-      atomnums = Mancude.CalcFracAtomNums(this);
-    return atomnums[getAtomIdx(atom)];
+      this.atomnums = atomnums = Mancude.calcAtomNums(this);
+    return atomnums;
+  }
+
+  public Fraction getFractionalAtomicNum(A atom) {
+    int idx = getAtomIdx(atom);
+    return new Fraction(getAtomicNumNumerator(idx), getAtomicNumDenominator(idx));
+  }
+
+  /**
+   * The numerator of the fractional atomic number of an atom.
+   *
+   * @param atomIdx the atom index
+   * @return the numerator
+   * @see Mancude#calcAtomNums(BaseMol)
+   */
+  public int getAtomicNumNumerator(int atomIdx) {
+    return getAtomNums().num[atomIdx];
+  }
+
+  /**
+   * The denominator of the fractional atomic number of an atom, 1 unless the
+   * atom is part of a mancude ring system.
+   *
+   * @param atomIdx the atom index
+   * @return the denominator
+   * @see Mancude#calcAtomNums(BaseMol)
+   */
+  public int getAtomicNumDenominator(int atomIdx) {
+    return getAtomNums().den[atomIdx];
   }
 
   public abstract int getNumHydrogens(A atom);
 
   public abstract int getMassNum(A atom);
 
+  /**
+   * The weight of an atom's isotope if it has a mass number, otherwise 0.
+   * The weights are looked up once for the molecule on first use.
+   *
+   * @param atomIdx the atom index
+   * @return the weight, 0 if no mass number
+   * @see Isotope#getWeight(int, int)
+   */
+  public double getIsotopeWeight(int atomIdx) {
+    // safe to compute more than once if labelling in parallel
+    double[] weights = this.isotopeWeights;
+    if (weights == null) {
+      weights = new double[getNumAtoms()];
+      for (int i = 0; i < weights.length; i++) {
+        A   atom    = getAtom(i);
+        int massnum = getMassNum(atom);
+        if (massnum != 0)
+          weights[i] = Isotope.getWeight(getAtomicNum(atom), massnum);
+      }
+      this.isotopeWeights = weights;
+    }
+    return weights[atomIdx];
+  }
+
   public abstract int getCharge(A atom);
 
   public abstract int getBondOrder(B bond);
 
+  private Adjacency getAdjacency() {
+    // safe to compute more than once if labelling in parallel
+    Adjacency adjacency = this.adjacency;
+    if (adjacency == null)
+      this.adjacency = adjacency = new Adjacency(this);
+    return adjacency;
+  }
+
+  /**
+   * The number of bonds of an atom. This and the other index based
+   * accessors do not allocate, by default they use an adjacency of the
+   * molecule built on first use.
+   *
+   * @param atomIdx the atom index
+   * @return the number of bonds
+   */
+  public int getDegree(int atomIdx) {
+    return getAdjacency().getDegree(atomIdx);
+  }
+
+  /**
+   * The index of the k'th neighbour of an atom, neighbours are in the same
+   * order as {@link #getBonds(Object)}.
+   *
+   * @param atomIdx the atom index
+   * @param k       the neighbour (0 .. degree-1)
+   * @return the neighbour's atom index
+   */
+  public int getNbr(int atomIdx, int k) {
+    return getAdjacency().getNbr(atomIdx, k);
+  }
+
+  /**
+   * The index of the bond to the k'th neighbour of an atom.
+   *
+   * @param atomIdx the atom index
+   * @param k       the neighbour (0 .. degree-1)
+   * @return the bond index
+   */
+  public int getNbrBond(int atomIdx, int k) {
+    return getAdjacency().getBond(atomIdx, k);
+  }
+
+  /**
+   * The order of the bond to the k'th neighbour of an atom.
+   *
+   * @param atomIdx the atom index
+   * @param k       the neighbour (0 .. degree-1)
+   * @return the bond order
+   */
+  public int getBondOrder(int atomIdx, int k) {
+    return getAdjacency().getBondOrder(atomIdx, k);
+  }
+
+  public boolean isInRing(int bondIdx) {
+    return isInRing(getBond(bondIdx));
+  }
+
   public abstract void setAtomProp(A atom, String key, Object val);
 
   public abstract <V> V getAtomProp(A atom, String key);
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.simolecule.centres;
+
+/**
+ * A light-weight handle to an edge held in a {@link CompactStore}, the edge
+ * has the same id as the node it leads to (before any flips). Handles are not
+ * retained by the store and are equal if they have the same id.
+ *
+ * @see Digraph.Storage#Compact
+ */
+final class CompactEdge<A, B> extends Edge<A, B> {
+
+  private final CompactStore<A, B> store;
+  private final int                id;
+
+  CompactEdge(CompactStore<A, B> store, int id)
+  {
+    this.store = store;
+    this.id = id;
+  }
+
+  int getId()
+  {
+    return id;
+  }
+
+  @Override
+  public Node<A, B> getBeg()
+  {
+    return store.node(store.isFlipped(id) ? id : store.getParent(id));
+  }
+
+  @Override
+  public Node<A, B> getEnd()
+  {
+    return store.node(store.isFlipped(id) ? store.getParent(id) : id);
+  }
+
+  @Override
+  public Descriptor getAux()
+  {
+    return store.getEdgeAux(id);
+  }
+
+  @Override
+  public void setAux(Descriptor aux)
+  {
+    store.setEdgeAux(id, aux);
+    store.getDigraph().invalidate();
+  }
+
+  @Override
+  public void flip()
+  {
+    store.flip(id);
+  }
+
+  @Override
+  public B getBond()
+  {
+    return store.getBond(id);
+  }
+
+  @Override
+  public boolean equals(Object o)
+  {
+    if (this == o)
+      return true;
+    if (!(o instanceof CompactEdge))
+      return false;
+    CompactEdge<?, ?> that = (CompactEdge<?, ?>) o;
+    return store == that.store && id == that.id;
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return id;
+  }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.simolecule.centres;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A snapshot of another molecule (adapter) held in compressed sparse row
+ * (CSR) arrays, the labeller can run on this view so that the cost of
+ * expanding digraphs no longer depends on how the toolkit implements its
+ * lookups (e.g. atom/bond index by linear search). The atom and bond
+ * objects of the original molecule are kept, so configurations need no
+ * mapping, and properties (labels) are written through to the original
+ * molecule.
+ *
+ * The molecule must not be modified while the view is in use.
+ *
+ * <pre>
+ * labeller.setCompactView(true); // or
+ * labeller.label(new CompactMol&lt;&gt;(mol), configs);
+ * </pre>
+ *
+ * @param <A> atom type
+ * @param <B> bond type
+ * @see Labeller#setCompactView(boolean)
+ */
+public final class CompactMol<A, B> extends BaseMol<A, B> {
+
+  private final BaseMol<A, B>    mol;
+  private final Object[]         atoms;
+  private final Object[]         bonds;
+  private final Map<A, Integer>  atomIdx;
+  private final Map<B, Integer>  bondIdx;
+
+  private final Adjacency     adj;
+  private final List<List<B>> bondLists;
+
+  private final int[]     bondBeg;
+  private final int[]     bondEnd;
+  private final int[]     bondOrder;
+  private final boolean[] ringBond;
+
+  private final int[] atomicNum;
+  private final int[] charge;
+  private final int[] hcount;
+  private final int[] massNum;
+
+  public CompactMol(BaseMol<A, B> mol)
+  {
+    this.mol = mol;
+    final int numAtoms = mol.getNumAtoms();
+    final int numBonds = mol.getNumBonds();
+
+    atoms = new Object[numAtoms];
+    atomIdx = new HashMap<>(2 * numAtoms);
+    atomicNum = new int[numAtoms];
+    charge = new int[numAtoms];
+    hcount = new int[numAtoms];
+    massNum = new int[numAtoms];
+    for (int i = 0; i < numAtoms; i++) {
+      A atom = mol.getAtom(i);
+      atoms[i] = atom;
+      atomIdx.put(atom, i);
+      atomicNum[i] = mol.getAtomicNum(atom);
+      charge[i] = mol.getCharge(atom);
+      hcount[i] = mol.getNumHydrogens(atom);
+      massNum[i] = mol.getMassNum(atom);
+    }
+
+    bonds = new Object[numBonds];
+    bondIdx = new HashMap<>(2 * numBonds);
+    bondBeg = new int[numBonds];
+    bondEnd = new int[numBonds];
+    bondOrder = new int[numBonds];
+    ringBond = new boolean[numBonds];
+    for (int i = 0; i < numBonds; i++) {
+      B bond = mol.getBond(i);
+      bonds[i] = bond;
+      bondIdx.put(bond, i);
+      bondBeg[i] = atomIdx.get(mol.getBeg(bond));
+      bondEnd[i] = atomIdx.get(mol.getEnd(bond));
+      bondOrder[i] = mol.getBondOrder(bond);
+      ringBond[i] = mol.isInRing(bond);
+    }
+
+    // the adjacency follows the order the original molecule lists the bonds
+    // of each atom, the digraph (and so the labels) depend on it
+    adj = new Adjacency(mol, atomIdx, bondIdx);
+    bondLists = new ArrayList<>(numAtoms);
+    for (int i = 0; i < numAtoms; i++)
+      bondLists.add(new BondList<B>(bonds, adj, i));
+  }
+
+  /**
+   * Read-only view of the bonds of an atom, in adjacency order.
+   */
+  private static final class BondList<B> extends AbstractList<B> {
+    private final Object[]  bonds;
+    private final Adjacency adj;
+    private final int       atomIdx;
+
+    private BondList(Object[] bonds, Adjacency adj, int atomIdx)
+    {
+      this.bonds = bonds;
+      this.adj = adj;
+      this.atomIdx = atomIdx;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public B get(int index)
+    {
+      if (index < 0 || index >= size())
+        throw new IndexOutOfBoundsException(Integer.toString(index));
+      return (B) bonds[adj.getBond(atomIdx, index)];
+    }
+
+    @Override
+    public int size()
+    {
+      return adj.getDegree(atomIdx);
+    }
+  }
+
+  /**
+   * The molecule this is a view of.
+   *
+   * @return the original molecule
+   */
+  public BaseMol<A, B> getMol()
+  {
+    return mol;
+  }
+
+  @Override
+  public Object getBaseImpl()
+  {
+    return mol.getBaseImpl();
+  }
+
+  @Override
+  public String getTitle()
+  {
+    return mol.getTitle();
+  }
+
+  @Override
+  public int getNumAtoms()
+  {
+    return atoms.length;
+  }
+
+  @Override
+  public int getNumBonds()
+  {
+    return bonds.length;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public A getAtom(int idx)
+  {
+    return (A) atoms[idx];
+  }
+
+  @Override
+  public int getAtomIdx(A atom)
+  {
+    Integer idx = atomIdx.get(atom);
+    return idx != null ? idx : -1;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public B getBond(int idx)
+  {
+    return (B) bonds[idx];
+  }
+
+  @Override
+  public int getBondIdx(B bond)
+  {
+    Integer idx = bondIdx.get(bond);
+    return idx != null ? idx : -1;
+  }
+
+  @Override
+  public Iterable<B> getBonds(A atom)
+  {
+    return bondLists.get(atomIdx.get(atom));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public A getOther(B bond, A atom)
+  {
+    int bidx = bondIdx.get(bond);
+    A   beg  = (A) atoms[bondBeg[bidx]];
+    return beg.equals(atom) ? (A) atoms[bondEnd[bidx]] : beg;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public A getBeg(B bond)
+  {
+    return (A) atoms[bondBeg[bondIdx.get(bond)]];
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public A getEnd(B bond)
+  {
+    return (A) atoms[bondEnd[bondIdx.get(bond)]];
+  }
+
+  @Override
+  public boolean isInRing(B bond)
+  {
+    return ringBond[bondIdx.get(bond)];
+  }
+
+  @Override
+  public int getAtomicNum(A atom)
+  {
+    // implicit hydrogens are null, let the original molecule decide
+    if (atom == null)
+      return mol.getAtomicNum(null);
+    return atomicNum[atomIdx.get(atom)];
+  }
+
+  @Override
+  public int getNumHydrogens(A atom)
+  {
+    return hcount[atomIdx.get(atom)];
+  }
+
+  @Override
+  public int getMassNum(A atom)
+  {
+    if (atom == null)
+      return mol.getMassNum(null);
+    return massNum[atomIdx.get(atom)];
+  }
+
+  @Override
+  public int getCharge(A atom)
+  {
+    return charge[atomIdx.get(atom)];
+  }
+
+  @Override
+  public int getBondOrder(B bond)
+  {
+    return bondOrder[bondIdx.get(bond)];
+  }
+
+  @Override
+  public int getDegree(int atomIdx)
+  {
+    return adj.getDegree(atomIdx);
+  }
+
+  @Override
+  public int getNbr(int atomIdx, int k)
+  {
+    return adj.getNbr(atomIdx, k);
+  }
+
+  @Override
+  public int getNbrBond(int atomIdx, int k)
+  {
+    return adj.getBond(atomIdx, k);
+  }
+
+  @Override
+  public int getBondOrder(int atomIdx, int k)
+  {
+    return adj.getBondOrder(atomIdx, k);
+  }
+
+  @Override
+  public boolean isInRing(int bondIdx)
+  {
+    return ringBond[bondIdx];
+  }
+
+  @Override
+  public void setAtomProp(A atom, String key, Object val)
+  {
+    mol.setAtomProp(atom, key, val);
+  }
+
+  @Override
+  public <V> V getAtomProp(A atom, String key)
+  {
+    return mol.getAtomProp(atom, key);
+  }
+
+  @Override
+  public void setBondProp(B bond, String key, Object val)
+  {
+    mol.setBondProp(bond, key, val);
+  }
+
+  @Override
+  public <V> V getBondProp(B bond, String key)
+  {
+    return mol.getBondProp(bond, key);
+  }
+
+  @Override
+  public String dumpDigraph(Digraph<A, B> digraph)
+  {
+    return mol.dumpDigraph(digraph);
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.simolecule.centres;
+
+import com.simolecule.centres.rules.Sort;
+
+import java.util.List;
+
+/**
+ * A light-weight handle to a node held in a {@link CompactStore}, handles are
+ * not retained by the store and are equal if they have the same id.
+ *
+ * @see Digraph.Storage#Compact
+ */
+final class CompactNode<A, B> extends Node<A, B> {
+
+  private final CompactStore<A, B> store;
+  private final int                id;
+
+  CompactNode(CompactStore<A, B> store, int id)
+  {
+    this.store = store;
+    this.id = id;
+  }
+
+  int getId()
+  {
+    return id;
+  }
+
+  @Override
+  public Digraph<A, B> getDigraph()
+  {
+    return store.getDigraph();
+  }
+
+  @Override
+  void newChild(int idx, A atom, B bond)
+  {
+    BaseMol<A, B> mol = getDigraph().getMol();
+    store.add(id, idx, bond,
+              store.getDistance(id) + 1,
+              mol.getAtomNums().getRank(mol.getAtomicNum(atom)),
+              0);
+  }
+
+  @Override
+  void newTerminalChild(int idx, A atom, B bond, int rank, int dist, int flags)
+  {
+    store.add(id, idx, bond, dist, rank, flags);
+  }
+
+  @Override
+  int getVisitDistance(int idx)
+  {
+    return store.getVisitDistance(id, idx);
+  }
+
+  @Override
+  B getPrevBond()
+  {
+    return store.getParent(id) >= 0 ? store.getBond(id) : null;
+  }
+
+  @Override
+  public int getDistance()
+  {
+    return store.getDistance(id);
+  }
+
+  @Override
+  public A getAtom()
+  {
+    return store.getAtom(id);
+  }
+
+  @Override
+  int getAtomIdx()
+  {
+    return store.getAtomIdx(id);
+  }
+
+  @Override
+  Node<A, B> getParent()
+  {
+    int par = store.getParent(id);
+    return par >= 0 ? store.node(par) : null;
+  }
+
+  @Override
+  void flipParentEdge()
+  {
+    store.flip(id);
+  }
+
+  @Override
+  public int getAtomicNumRank()
+  {
+    return store.getAtomicNumRank(id);
+  }
+
+  @Override
+  public Descriptor getAux()
+  {
+    return store.getNodeAux(id);
+  }
+
+  @Override
+  public void setAux(Descriptor desc)
+  {
+    store.setNodeAux(id, desc);
+    getDigraph().invalidate();
+  }
+
+  @Override
+  public Sort.Memo getSortMemo()
+  {
+    return store.getSortMemo(id);
+  }
+
+  @Override
+  public void setSortMemo(Sort.Memo sortMemo)
+  {
+    store.setSortMemo(id, sortMemo);
+  }
+
+  @Override
+  public List<Edge<A, B>> getEdges()
+  {
+    if (!store.isSet(id, EXPANDED)) {
+      store.setFlag(id, EXPANDED);
+      getDigraph().expand(this);
+    }
+    return store.getEdges(id);
+  }
+
+  @Override
+  public boolean isEdgeList(List<Edge<A, B>> edges)
+  {
+    return store.isEdgeList(id, edges);
+  }
+
+  @Override
+  public boolean isSet(int mask)
+  {
+    return store.isSet(id, mask);
+  }
+
+  @Override
+  public boolean isTerminal()
+  {
+    return store.isTerminal(id);
+  }
+
+  @Override
+  public boolean equals(Object o)
+  {
+    if (this == o)
+      return true;
+    if (!(o instanceof CompactNode))
+      return false;
+    CompactNode<?, ?> that = (CompactNode<?, ?>) o;
+    return store == that.store && id == that.id;
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return id;
+  }
+}
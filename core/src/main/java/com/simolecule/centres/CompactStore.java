@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.simolecule.centres;
+
+import com.simolecule.centres.rules.Sort;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Structure-of-arrays storage for the nodes and edges of a digraph. Each node
+ * is identified by an integer id, the edge into a node (from its parent) has
+ * the same id as the node. Children created by an expansion are contiguous.
+ * Rather than copying the visited atoms to every node, the ancestry of a node
+ * is determined by walking the parent column. The {@link CompactNode} and
+ * {@link CompactEdge} handles are created on first access and kept by id,
+ * the hot loops (e.g. getBeg/getEnd when comparing ligands) do not
+ * allocate.
+ *
+ * @see Digraph.Storage#Compact
+ */
+final class CompactStore<A, B> {
+
+  /**
+   * Flag (stored with the node flags) indicates the edge into the node has
+   * been flipped, i.e. the node is the 'beg' rather than the 'end'.
+   */
+  private static final int FLIPPED = 0x10;
+
+  private final Digraph<A, B> g;
+  private final BaseMol<A, B> mol;
+
+  private int      numNodes = 0;
+  private int[]    parent;
+  private int[]    atom;
+  private Object[] bond;
+  private char[]   dist;
+  private byte[]   flags;
+  private short[]  rank;
+  private int[]    first;
+  private short[]  count;
+
+  // the (sortable) order of each nodes edges, allocated on first access
+  private int[] orderStart;
+  private int[] order;
+  private int   orderLen = 0;
+
+  // allocated on demand
+  private Descriptor[] nodeAux;
+  private Descriptor[] edgeAux;
+  private Sort.Memo[]  sortMemo;
+
+  // handles, created on first access
+  private CompactNode<A, B>[] nodes;
+  private CompactEdge<A, B>[] edges;
+
+  CompactStore(Digraph<A, B> g, int capacity)
+  {
+    this.g = g;
+    this.mol = g.getMol();
+    capacity = Math.max(capacity, 16);
+    parent = new int[capacity];
+    atom = new int[capacity];
+    bond = new Object[capacity];
+    dist = new char[capacity];
+    flags = new byte[capacity];
+    rank = new short[capacity];
+    first = new int[capacity];
+    count = new short[capacity];
+    orderStart = new int[capacity];
+    order = new int[capacity];
+  }
+
+  private void grow()
+  {
+    int len = parent.length + (parent.length >> 1);
+    parent = Arrays.copyOf(parent, len);
+    atom = Arrays.copyOf(atom, len);
+    bond = Arrays.copyOf(bond, len);
+    dist = Arrays.copyOf(dist, len);
+    flags = Arrays.copyOf(flags, len);
+    rank = Arrays.copyOf(rank, len);
+    first = Arrays.copyOf(first, len);
+    count = Arrays.copyOf(count, len);
+    orderStart = Arrays.copyOf(orderStart, len);
+    if (nodeAux != null)
+      nodeAux = Arrays.copyOf(nodeAux, len);
+    if (edgeAux != null)
+      edgeAux = Arrays.copyOf(edgeAux, len);
+    if (sortMemo != null)
+      sortMemo = Arrays.copyOf(sortMemo, len);
+    if (nodes != null)
+      nodes = Arrays.copyOf(nodes, len);
+    if (edges != null)
+      edges = Arrays.copyOf(edges, len);
+  }
+
+  Digraph<A, B> getDigraph()
+  {
+    return g;
+  }
+
+  int getNumNodes()
+  {
+    return numNodes;
+  }
+
+  /**
+   * Add a new node to the store.
+   *
+   * @param par     parent node id (-1 for the root)
+   * @param atomIdx atom index (-1 for implicit hydrogens)
+   * @param b       the bond from the parent
+   * @param d       distance from the root
+   * @param r       atomic number rank
+   * @param f       node flags
+   * @return the id of the new node
+   */
+  int add(int par, int atomIdx, B b, int d, int r, int f)
+  {
+    if (numNodes == parent.length)
+      grow();
+    int id = numNodes++;
+    if ((f & Node.TERMINAL) != 0)
+      f |= Node.EXPANDED;
+    parent[id] = par;
+    atom[id] = atomIdx;
+    bond[id] = b;
+    dist[id] = (char) d;
+    flags[id] = (byte) f;
+    rank[id] = (short) r;
+    orderStart[id] = -1;
+    if (par >= 0) {
+      if (count[par] == 0)
+        first[par] = id;
+      count[par]++;
+    }
+    return id;
+  }
+
+  @SuppressWarnings("unchecked")
+  CompactNode<A, B> node(int id)
+  {
+    if (nodes == null)
+      nodes = new CompactNode[parent.length];
+    CompactNode<A, B> node = nodes[id];
+    if (node == null)
+      nodes[id] = node = new CompactNode<>(this, id);
+    return node;
+  }
+
+  @SuppressWarnings("unchecked")
+  CompactEdge<A, B> edge(int id)
+  {
+    if (edges == null)
+      edges = new CompactEdge[parent.length];
+    CompactEdge<A, B> edge = edges[id];
+    if (edge == null)
+      edges[id] = edge = new CompactEdge<>(this, id);
+    return edge;
+  }
+
+  int getParent(int id)
+  {
+    return parent[id];
+  }
+
+  A getAtom(int id)
+  {
+    return atom[id] < 0 ? null : mol.getAtom(atom[id]);
+  }
+
+  int getAtomIdx(int id)
+  {
+    return atom[id];
+  }
+
+  @SuppressWarnings("unchecked")
+  B getBond(int id)
+  {
+    return (B) bond[id];
+  }
+
+  int getDistance(int id)
+  {
+    return dist[id];
+  }
+
+  int getAtomicNumRank(int id)
+  {
+    return rank[id];
+  }
+
+  boolean isSet(int id, int mask)
+  {
+    return (flags[id] & mask) != 0;
+  }
+
+  void setFlag(int id, int mask)
+  {
+    flags[id] |= mask;
+  }
+
+  boolean isTerminal(int id)
+  {
+    return (flags[id] & Node.TERMINAL) != 0 ||
+           ((flags[id] & Node.EXPANDED) != 0 && getNumEdges(id) == 1);
+  }
+
+  int getNumEdges(int id)
+  {
+    return (parent[id] >= 0 ? 1 : 0) + count[id];
+  }
+
+  /**
+   * Walk up the parent chain to find if the atom is on the path from the
+   * root to the provided node, the distance of that ancestor is returned.
+   *
+   * @param id      node id
+   * @param atomIdx atom index
+   * @return distance of the ancestor, 0 if the atom is not an ancestor
+   */
+  int getVisitDistance(int id, int atomIdx)
+  {
+    while (id >= 0) {
+      if (atom[id] == atomIdx)
+        return dist[id];
+      id = parent[id];
+    }
+    return 0;
+  }
+
+  Descriptor getNodeAux(int id)
+  {
+    return nodeAux != null ? nodeAux[id] : null;
+  }
+
+  void setNodeAux(int id, Descriptor desc)
+  {
+    if (nodeAux == null) {
+      if (desc == null)
+        return;
+      nodeAux = new Descriptor[parent.length];
+    }
+    nodeAux[id] = desc;
+  }
+
+  Descriptor getEdgeAux(int id)
+  {
+    return edgeAux != null ? edgeAux[id] : null;
+  }
+
+  void setEdgeAux(int id, Descriptor desc)
+  {
+    if (edgeAux == null) {
+      if (desc == null)
+        return;
+      edgeAux = new Descriptor[parent.length];
+    }
+    edgeAux[id] = desc;
+  }
+
+  Sort.Memo getSortMemo(int id)
+  {
+    return sortMemo != null ? sortMemo[id] : null;
+  }
+
+  void setSortMemo(int id, Sort.Memo memo)
+  {
+    if (sortMemo == null) {
+      if (memo == null)
+        return;
+      sortMemo = new Sort.Memo[parent.length];
+    }
+    sortMemo[id] = memo;
+  }
+
+  boolean isFlipped(int id)
+  {
+    return (flags[id] & FLIPPED) != 0;
+  }
+
+  void flip(int id)
+  {
+    flags[id] ^= FLIPPED;
+  }
+
+  /**
+   * Access the edges of a node as a list, the order of the list may be
+   * modified (sorted) but not the content.
+   *
+   * @param id node id
+   * @return the edges
+   */
+  List<Edge<A, B>> getEdges(int id)
+  {
+    if (orderStart[id] < 0) {
+      int len = getNumEdges(id);
+      if (orderLen + len > order.length)
+        order = Arrays.copyOf(order, Math.max(orderLen + len, order.length + (order.length >> 1)));
+      int pos = orderStart[id] = orderLen;
+      if (parent[id] >= 0)
+        order[pos++] = id;
+      for (int i = 0; i < count[id]; i++)
+        order[pos++] = first[id] + i;
+      orderLen = pos;
+    }
+    return new EdgeList<>(this, id, orderStart[id], getNumEdges(id));
+  }
+
+  /**
+   * Is the list a view of the edges of the node, as returned by
+   * {@link #getEdges(int)}.
+   *
+   * @param id    node id
+   * @param edges the edges
+   * @return the list is the node's edges
+   */
+  boolean isEdgeList(int id, List<Edge<A, B>> edges)
+  {
+    if (!(edges instanceof EdgeList))
+      return false;
+    EdgeList<?, ?> list = (EdgeList<?, ?>) edges;
+    return list.store == this && list.id == id;
+  }
+
+  /**
+   * A view of a region of the edge order.
+   */
+  private static final class EdgeList<A, B> extends AbstractList<Edge<A, B>> implements RandomAccess {
+
+    private final CompactStore<A, B> store;
+    private final int                id, beg, len;
+
+    private EdgeList(CompactStore<A, B> store, int id, int beg, int len)
+    {
+      this.store = store;
+      this.id = id;
+      this.beg = beg;
+      this.len = len;
+    }
+
+    @Override
+    public Edge<A, B> get(int i)
+    {
+      if (i < 0 || i >= len)
+        throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + len);
+      return store.edge(store.order[beg + i]);
+    }
+
+    @Override
+    public Edge<A, B> set(int i, Edge<A, B> e)
+    {
+      Edge<A, B> prev = get(i);
+      store.order[beg + i] = ((CompactEdge<A, B>) e).getId();
+      return prev;
+    }
+
+    @Override
+    public int size()
+    {
+      return len;
+    }
+  }
+}
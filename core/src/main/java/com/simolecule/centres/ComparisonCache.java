@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.simolecule.centres;
+
+import java.util.Arrays;
+
+/**
+ * Memo of ligand comparisons made while labelling with a digraph, keyed on
+ * the sequence rule, the two edges and whether the comparison was deep.
+ * The result of comparing two ligands depends on the orientation of the
+ * edges and the auxiliary descriptors, entries are therefore discarded
+ * whenever the digraph is re-rooted or an aux descriptor changes
+ * (see {@link Digraph#getVersion()}).
+ *
+ * @see com.simolecule.centres.rules.Sort#compareLigands
+ */
+public final class ComparisonCache<A, B> {
+
+  /**
+   * Value returned when there is no cached comparison.
+   */
+  public static final int MISSING = Integer.MIN_VALUE;
+
+  // the digraph is small for most centres, limit the memo for the rest
+  private static final int MAX_SIZE = 1 << 16;
+
+  private final Digraph<A, B> digraph;
+  private int version;
+
+  // open addressing, 3 keys (rule, a, b) per slot, deep and shallow
+  // comparisons are held in separate tables, rules are compared by identity
+  // and edges by equality (compact edge handles are not unique)
+  private final Table deep    = new Table();
+  private final Table shallow = new Table();
+
+  private long numHits, numMisses;
+
+  ComparisonCache(Digraph<A, B> digraph)
+  {
+    this.digraph = digraph;
+    this.version = digraph.getVersion();
+  }
+
+  private Table table(boolean deep)
+  {
+    if (version != digraph.getVersion()) {
+      this.deep.clear();
+      this.shallow.clear();
+      version = digraph.getVersion();
+    }
+    return deep ? this.deep : this.shallow;
+  }
+
+  /**
+   * Get the cached comparison of two ligands.
+   *
+   * @param rule the sequence rule
+   * @param a    first edge
+   * @param b    second edge
+   * @param deep deep (recursive) comparison
+   * @return the comparison, or {@link #MISSING}
+   */
+  public int get(Object rule, Edge<A, B> a, Edge<A, B> b, boolean deep)
+  {
+    int cmp = table(deep).get(rule, a, b);
+    if (cmp == MISSING)
+      numMisses++;
+    else
+      numHits++;
+    return cmp;
+  }
+
+  /**
+   * Store the comparison of two ligands, the version is that of the
+   * digraph before the comparison was made and the value is not stored if
+   * the digraph has changed since.
+   *
+   * @param rule    the sequence rule
+   * @param a       first edge
+   * @param b       second edge
+   * @param deep    deep (recursive) comparison
+   * @param cmp     the comparison
+   * @param version the digraph version the comparison was made with
+   */
+  public void put(Object rule, Edge<A, B> a, Edge<A, B> b, boolean deep, int cmp, int version)
+  {
+    if (version != digraph.getVersion())
+      return;
+    table(deep).put(rule, a, b, cmp);
+  }
+
+  public long getNumHits()
+  {
+    return numHits;
+  }
+
+  public long getNumMisses()
+  {
+    return numMisses;
+  }
+
+  private static final class Table {
+
+    private Object[] keys = new Object[3 * 16];
+    private int[]    vals = new int[16];
+    private int      size = 0;
+
+    private static int hash(Object rule, Object a, Object b)
+    {
+      int h = System.identityHashCode(rule);
+      h = 31 * h + a.hashCode();
+      h = 31 * h + b.hashCode();
+      return h ^ (h >>> 16);
+    }
+
+    private boolean matches(int i, Object rule, Object a, Object b)
+    {
+      return keys[3 * i] == rule && a.equals(keys[3 * i + 1]) && b.equals(keys[3 * i + 2]);
+    }
+
+    int get(Object rule, Object a, Object b)
+    {
+      if (size == 0)
+        return MISSING;
+      int mask = vals.length - 1;
+      for (int i = hash(rule, a, b) & mask; keys[3 * i] != null; i = (i + 1) & mask) {
+        if (matches(i, rule, a, b))
+          return vals[i];
+      }
+      return MISSING;
+    }
+
+    void put(Object rule, Object a, Object b, int cmp)
+    {
+      if (size >= MAX_SIZE)
+        clear();
+      else if (2 * (size + 1) > vals.length)
+        grow();
+      int mask = vals.length - 1;
+      int i    = hash(rule, a, b) & mask;
+      while (keys[3 * i] != null) {
+        if (matches(i, rule, a, b)) {
+          vals[i] = cmp;
+          return;
+        }
+        i = (i + 1) & mask;
+      }
+      keys[3 * i]     = rule;
+      keys[3 * i + 1] = a;
+      keys[3 * i + 2] = b;
+      vals[i]         = cmp;
+      size++;
+    }
+
+    private void grow()
+    {
+      Object[] oldKeys = keys;
+      int[]    oldVals = vals;
+      keys = new Object[2 * oldKeys.length];
+      vals = new int[2 * oldVals.length];
+      size = 0;
+      for (int i = 0; i < oldVals.length; i++) {
+        if (oldKeys[3 * i] != null)
+          put(oldKeys[3 * i], oldKeys[3 * i + 1], oldKeys[3 * i + 2], oldVals[i]);
+      }
+    }
+
+    void clear()
+    {
+      if (size != 0) {
+        Arrays.fill(keys, null);
+        size = 0;
+      }
+    }
+  }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.simolecule.centres;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Metrics for a labelling run that may be updated concurrently. Counters are
+ * striped over several cache lines (in the manner of a LongAdder) so threads
+ * labelling in parallel do not contend on a single value. Metrics of several
+ * runs can be combined with {@link #merge(ConcurrentMetrics)}.
+ */
+public final class ConcurrentMetrics implements LabellingMetrics {
+
+  private static final int NUM_RULES = Stats.RULE_NAMES.length;
+
+  private static final int CONFIGS       = 0;
+  private static final int LABELLED      = 1;
+  private static final int AUX_CALC      = 2;
+  private static final int AUX_LABELLED  = 3;
+  private static final int PREPASS       = 4;
+  private static final int PREPASS_HIT   = 5;
+  private static final int AUX_HIT       = 6;
+  private static final int AUX_MISS      = 7;
+  private static final int RULE_OFFSET   = 8;
+  private static final int NUM_COUNTERS  = RULE_OFFSET + NUM_RULES;
+
+  // counters of a stripe are padded to their own cache lines
+  private static final int STRIPE_WIDTH = (NUM_COUNTERS + 7) & ~7;
+  private static final int NUM_STRIPES  = stripes();
+
+  private final AtomicLongArray counters = new AtomicLongArray(NUM_STRIPES * STRIPE_WIDTH);
+
+  private final Histogram configsPerMol  = new Histogram();
+  private final Histogram digraphNodes   = new Histogram();
+  private final Histogram digraphSpheres = new Histogram();
+
+  private static int stripes()
+  {
+    int n = 1;
+    while (n < 2 * Runtime.getRuntime().availableProcessors() && n < 64)
+      n <<= 1;
+    return n;
+  }
+
+  private static int stripe()
+  {
+    long id = Thread.currentThread().getId();
+    return (int) ((id ^ (id >>> 16)) & (NUM_STRIPES - 1)) * STRIPE_WIDTH;
+  }
+
+  private long sum(int counter)
+  {
+    long total = 0;
+    for (int i = 0; i < NUM_STRIPES; i++)
+      total += counters.get(i * STRIPE_WIDTH + counter);
+    return total;
+  }
+
+  @Override
+  public void countConfigs(int numConfigs)
+  {
+    counters.addAndGet(stripe() + CONFIGS, numConfigs);
+    configsPerMol.add(numConfigs);
+  }
+
+  @Override
+  public void countLabelled(Descriptor desc)
+  {
+    counters.incrementAndGet(stripe() + LABELLED);
+  }
+
+  @Override
+  public void countAux(int numCalculated, int numLabelled)
+  {
+    int stripe = stripe();
+    counters.addAndGet(stripe + AUX_CALC, numCalculated);
+    counters.addAndGet(stripe + AUX_LABELLED, numLabelled);
+  }
+
+  @Override
+  public void countRule(int ruleIdx)
+  {
+    counters.incrementAndGet(stripe() + RULE_OFFSET + ruleIdx);
+  }
+
+  @Override
+  public void countPrePass(boolean labelled)
+  {
+    int stripe = stripe();
+    counters.incrementAndGet(stripe + PREPASS);
+    if (labelled)
+      counters.incrementAndGet(stripe + PREPASS_HIT);
+  }
+
+  @Override
+  public void countAuxCache(int numHits, int numMisses)
+  {
+    int stripe = stripe();
+    counters.addAndGet(stripe + AUX_HIT, numHits);
+    counters.addAndGet(stripe + AUX_MISS, numMisses);
+  }
+
+  @Override
+  public <A, B> void measureDigraph(Digraph<A, B> digraph)
+  {
+    digraphNodes.add(digraph.getNumNodes());
+    digraphSpheres.add(digraph.getNumSpheres());
+  }
+
+  /**
+   * Add all the counts of another metrics collector to this one.
+   *
+   * @param other the other metrics
+   */
+  public void merge(ConcurrentMetrics other)
+  {
+    int stripe = stripe();
+    for (int i = 0; i < NUM_COUNTERS; i++) {
+      long count = other.sum(i);
+      if (count != 0)
+        counters.addAndGet(stripe + i, count);
+    }
+    configsPerMol.merge(other.configsPerMol);
+    digraphNodes.merge(other.digraphNodes);
+    digraphSpheres.merge(other.digraphSpheres);
+  }
+
+  public long getNumConfigs()
+  {
+    return sum(CONFIGS);
+  }
+
+  public long getNumLabelled()
+  {
+    return sum(LABELLED);
+  }
+
+  public long getNumAuxCalculated()
+  {
+    return sum(AUX_CALC);
+  }
+
+  public long getNumAuxLabelled()
+  {
+    return sum(AUX_LABELLED);
+  }
+
+  public long getNumPrePassed()
+  {
+    return sum(PREPASS);
+  }
+
+  public long getNumPrePassHits()
+  {
+    return sum(PREPASS_HIT);
+  }
+
+  /**
+   * Fraction of the configurations tried with the constitutional pre-pass
+   * that it labelled (without building a digraph).
+   *
+   * @return the hit rate, 0 if none were tried
+   */
+  public double getPrePassHitRate()
+  {
+    long num = getNumPrePassed();
+    return num != 0 ? getNumPrePassHits() / (double) num : 0;
+  }
+
+  public long getNumAuxCacheHits()
+  {
+    return sum(AUX_HIT);
+  }
+
+  public long getNumAuxCacheMisses()
+  {
+    return sum(AUX_MISS);
+  }
+
+  /**
+   * Fraction of the auxiliary descriptors that were reused from the cache
+   * rather than labelled in a digraph.
+   *
+   * @return the hit rate, 0 if none were required
+   */
+  public double getAuxCacheHitRate()
+  {
+    long num = getNumAuxCacheHits() + getNumAuxCacheMisses();
+    return num != 0 ? getNumAuxCacheHits() / (double) num : 0;
+  }
+
+  /**
+   * Number of configurations decided by the rule with the specified index
+   * (see {@link Stats#RULE_NAMES}).
+   *
+   * @param ruleIdx rule index
+   * @return the count
+   */
+  public long getRuleCount(int ruleIdx)
+  {
+    return sum(RULE_OFFSET + ruleIdx);
+  }
+
+  /**
+   * Histogram of the number of configurations per molecule.
+   */
+  public Histogram getConfigsPerMol()
+  {
+    return configsPerMol;
+  }
+
+  /**
+   * Histogram of the number of nodes in each digraph.
+   */
+  public Histogram getDigraphNodes()
+  {
+    return digraphNodes;
+  }
+
+  /**
+   * Histogram of the number of spheres in each digraph.
+   */
+  public Histogram getDigraphSpheres()
+  {
+    return digraphSpheres;
+  }
+
+  @Override
+  public String toString()
+  {
+    StringBuilder sb = new StringBuilder();
+    sb.append("Num Centres\t").append(getNumConfigs()).append('\n');
+    sb.append("Num Centres Labelled\t").append(getNumLabelled()).append('\n');
+    sb.append("Num Aux Required\t").append(getNumAuxCalculated()).append('\n');
+    sb.append("Num Aux Used\t").append(getNumAuxLabelled()).append('\n');
+    sb.append("Num Pre-pass\t").append(getNumPrePassed()).append('\n');
+    sb.append("Num Pre-pass Labelled\t").append(getNumPrePassHits()).append('\n');
+    sb.append("Num Aux Cache Hits\t").append(getNumAuxCacheHits()).append('\n');
+    sb.append("Num Aux Cache Misses\t").append(getNumAuxCacheMisses()).append('\n');
+    for (int i = 0; i < NUM_RULES; i++)
+      sb.append("Rule ").append(Stats.RULE_NAMES[i]).append('\t').append(getRuleCount(i)).append('\n');
+    return sb.toString();
+  }
+}
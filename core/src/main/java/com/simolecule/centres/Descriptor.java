@@ -64,7 +64,13 @@ public enum Descriptor {
 
   SP_4,
   TBPY_5,
-  OC_6;
+  OC_6,
+
+  /**
+   * The configuration could not be labelled within the
+   * {@link LabellingBudget}.
+   */
+  BudgetExceeded;
 
   boolean isPseudoAsymmetric()
   {
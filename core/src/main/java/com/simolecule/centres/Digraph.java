@@ -34,54 +34,127 @@ import java.util.List;
 public final class Digraph<A, B> {
 
   /**
-   * Upper limit on the size of the digraph, stops out of memory error with a
-   * more graceful failure. 0=Infinite
+   * How the nodes and edges of the digraph are stored.
    */
-  private static final int MAX_NODE_COUNT = 100000;
+  public enum Storage {
+    /**
+     * Each node and edge is an object, non-terminal nodes hold a copy of the
+     * atoms visited from the root.
+     */
+    Linked,
+    /**
+     * Nodes and edges are held in parallel primitive arrays (structure of
+     * arrays) and accessed through light-weight handles, ancestry is
+     * determined from the parent of each node. Uses significantly less
+     * memory for large digraphs.
+     */
+    Compact
+  }
 
   /**
-   * Used for debugging only, 0=Infinite
+   * How a node determines whether an atom has been visited on the path from
+   * the root. The labels assigned do not depend on the mode used.
    */
-  private static final int MAX_NODE_DIST = 0;
+  public enum Ancestry {
+    /**
+     * Each non-terminal node has a copy of the distances of all atoms visited
+     * from the root, constant time lookup but memory grows with
+     * nodes &times; atoms.
+     */
+    VisitArray,
+    /**
+     * Each non-terminal node has a copy of a bit set of the atoms visited
+     * from the root, the distance of a visited atom is found by walking up
+     * the parents.
+     */
+    PathBitSet,
+    /**
+     * No copy is made, lookup walks up the parents of the node. Used by
+     * {@link Storage#Compact}.
+     */
+    ParentChain
+  }
 
   private final BaseMol<A, B> mol;
+  private final Storage       storage;
+  private final Ancestry      ancestry;
   private       Node<A, B>    root;
   private       Node<A, B>    tmproot;
   private       A             atomFocus;
   private int numNodes = 0;
   private A rule6Ref;
 
+  /**
+   * Limits on the size of the digraph, stops out of memory error with a
+   * more graceful failure.
+   */
+  private LabellingBudget budget   = LabellingBudget.DEFAULT;
+  private long            deadline = 0;
+  private int             numDeadlineChecks;
+  private int             nodeBytes;
+
+  private LabellingMetrics    metrics = LabellingMetrics.NONE;
+  private int                 numSpheres = 0;
+  private int                 version    = 0;
+  private ComparisonCache<A, B> comparisonCache;
+
   public Digraph(BaseMol<A, B> mol)
+  {
+    this(mol, Storage.Linked);
+  }
+
+  public Digraph(BaseMol<A, B> mol, Storage storage)
+  {
+    this(mol, storage, Ancestry.VisitArray);
+  }
+
+  /**
+   * Create a digraph with the specified storage and ancestry mode, the
+   * {@link Storage#Compact} storage always uses {@link Ancestry#ParentChain}.
+   *
+   * @param mol      the molecule
+   * @param storage  how nodes are stored
+   * @param ancestry how visited atoms are tracked
+   */
+  public Digraph(BaseMol<A, B> mol, Storage storage, Ancestry ancestry)
   {
     this.mol = mol;
+    this.storage = storage;
+    this.ancestry = storage == Storage.Compact ? Ancestry.ParentChain : ancestry;
   }
 
   public Digraph(BaseMol<A, B> mol, A atom, B bond)
   {
-    this.mol = mol;
+    this(mol);
     init(atom, bond);
   }
 
   public Digraph(BaseMol<A, B> mol, A atom)
   {
-    this.mol = mol;
+    this(mol);
     init(atom);
   }
 
   public Node<A, B> init(A atom, B bond)
   {
-    this.root = new Node<>(this,
-                           new char[mol.getNumAtoms()],
-                           atom,
-                           mol.getAtomicNum(atom),
-                           1,
-                           (char) 1,
-                           0);
     int atomIdx = mol.getAtomIdx(atom);
-    this.root.visit[atomIdx] = 1;
+    if (storage == Storage.Compact) {
+      CompactStore<A, B> store = new CompactStore<>(this, 4 * mol.getNumAtoms());
+      store.add(-1, atomIdx, null, 1, mol.getAtomNums().getRank(mol.getAtomicNum(atom)), 0);
+      this.root = store.node(0);
+    } else {
+      this.root = new LinkedNode<>(this,
+                                   null,
+                                   atomIdx,
+                                   atom,
+                                   mol.getAtomNums().getRank(mol.getAtomicNum(atom)),
+                                   1,
+                                   0);
+    }
     if (bond == null)
       this.atomFocus = atom;
     numNodes++;
+    numSpheres = 1;
     return this.root;
   }
 
@@ -90,6 +163,168 @@ public final class Digraph<A, B> {
     return init(atom, null);
   }
 
+  public Storage getStorage()
+  {
+    return storage;
+  }
+
+  public Ancestry getAncestry()
+  {
+    return ancestry;
+  }
+
+  /**
+   * Set the budget of this digraph.
+   *
+   * @param budget   the budget
+   * @param deadline the {@link System#nanoTime()} deadline, 0 for none
+   * @see LabellingBudget#deadline()
+   */
+  public void setBudget(LabellingBudget budget, long deadline)
+  {
+    this.budget = budget;
+    this.deadline = deadline;
+  }
+
+  public LabellingBudget getBudget()
+  {
+    return budget;
+  }
+
+  /**
+   * Set the metrics that events of labelling with this digraph are
+   * reported to.
+   *
+   * @param metrics the metrics
+   */
+  public void setMetrics(LabellingMetrics metrics)
+  {
+    this.metrics = metrics != null ? metrics : LabellingMetrics.NONE;
+  }
+
+  public LabellingMetrics getMetrics()
+  {
+    return metrics;
+  }
+
+  /**
+   * The distance of the deepest node created so far.
+   *
+   * @return number of spheres
+   */
+  public int getNumSpheres()
+  {
+    return numSpheres;
+  }
+
+  /**
+   * The version of the digraph is incremented each time a change is made
+   * that may alter the comparison of ligands, re-rooting or setting aux
+   * descriptors.
+   *
+   * @return the version
+   */
+  public int getVersion()
+  {
+    return version;
+  }
+
+  void invalidate()
+  {
+    version++;
+  }
+
+  /**
+   * Access the memo of ligand comparisons made with this digraph.
+   *
+   * @return the comparison cache
+   */
+  public ComparisonCache<A, B> getComparisonCache()
+  {
+    if (comparisonCache == null)
+      comparisonCache = new ComparisonCache<>(this);
+    return comparisonCache;
+  }
+
+  A getAtomFocus()
+  {
+    return atomFocus;
+  }
+
+  /**
+   * Create a new (uninitialised) digraph of the same molecule, with the same
+   * storage, ancestry and budget as this one.
+   *
+   * @return the new digraph
+   */
+  public Digraph<A, B> newDigraph()
+  {
+    Digraph<A, B> digraph = new Digraph<>(mol, storage, ancestry);
+    digraph.setBudget(budget, deadline);
+    digraph.setMetrics(metrics);
+    return digraph;
+  }
+
+  /**
+   * Approximate number of bytes used by each node (and the edge to it) with
+   * the storage and ancestry of this digraph.
+   *
+   * @return bytes per node
+   */
+  int getApproxNodeBytes()
+  {
+    if (nodeBytes == 0) {
+      if (storage == Storage.Compact) {
+        nodeBytes = 64;
+      } else {
+        // node, edge list and edge
+        nodeBytes = 136;
+        if (ancestry == Ancestry.VisitArray)
+          nodeBytes += 16 + 2 * mol.getNumAtoms();
+        else if (ancestry == Ancestry.PathBitSet)
+          nodeBytes += 16 + 8 * ((mol.getNumAtoms() + 63) >>> 6);
+      }
+    }
+    return nodeBytes;
+  }
+
+  private void checkBudget(Node<A, B> beg)
+  {
+    final int maxNodes = budget.getMaxNodes();
+    if (maxNodes > 0 && numNodes >= maxNodes)
+      throw new TooManyNodesException(maxNodes);
+    final int maxDepth = budget.getMaxDepth();
+    if (maxDepth > 0 && beg.getDistance() >= maxDepth)
+      throw new BudgetExceededException(BudgetExceededException.Limit.Depth,
+                                        "Digraph deeper than " + maxDepth + " spheres.");
+    final long maxBytes = budget.getMaxBytes();
+    if (maxBytes > 0 && (long) numNodes * getApproxNodeBytes() > maxBytes)
+      throw new BudgetExceededException(BudgetExceededException.Limit.Memory,
+                                        "Digraph larger than " + maxBytes + " bytes.");
+    if (deadline != 0 && System.nanoTime() - deadline > 0)
+      throw timeExceeded();
+  }
+
+  private BudgetExceededException timeExceeded()
+  {
+    return new BudgetExceededException(BudgetExceededException.Limit.Time,
+                                       "Labelling took longer than " + budget.getMaxMillis() + " ms.");
+  }
+
+  /**
+   * Check the time limit of the budget. Called from the loops that compare
+   * ligands, so a centre that is stuck comparing an already expanded
+   * digraph (no new nodes) is still stopped. The clock is read every 256
+   * calls.
+   *
+   * @throws BudgetExceededException the deadline has passed
+   */
+  public void checkDeadline()
+  {
+    if (deadline != 0 && (++numDeadlineChecks & 0xff) == 0 && System.nanoTime() - deadline > 0)
+      throw timeExceeded();
+  }
+
   public int getNumNodes()
   {
     return numNodes;
@@ -145,64 +380,96 @@ public final class Digraph<A, B> {
 
   /**
    * Sets the root node of this digraph by flipping all the
-   * 'up' edges to be 'down'.
+   * 'up' edges to be 'down'. Only the edges on the path between the
+   * current root and the new root are flipped, the path is found by
+   * walking the parents of each up to their common ancestor.
    *
    * @param newroot the new root
    */
   public void changeRoot(Node<A, B> newroot)
   {
-    Deque<Node<A, B>> queue = new ArrayDeque<>();
-    queue.add(newroot);
-    List<Edge<A, B>> toflip = new ArrayList<>();
-    while (!queue.isEmpty()) {
-      Node<A, B> node = queue.poll();
-      for (Edge<A, B> e : node.getEdges()) {
-        if (e.isEnd(node)) {
-          toflip.add(e);
-          queue.add(e.getBeg());
-        }
-      }
+    Node<A, B> curr   = getCurrRoot();
+    Node<A, B> a      = curr;
+    Node<A, B> b      = newroot;
+    int        adepth = depth(a);
+    int        bdepth = depth(b);
+    while (adepth > bdepth) {
+      a.flipParentEdge();
+      a = a.getParent();
+      adepth--;
+    }
+    while (bdepth > adepth) {
+      b.flipParentEdge();
+      b = b.getParent();
+      bdepth--;
+    }
+    while (!a.equals(b)) {
+      a.flipParentEdge();
+      a = a.getParent();
+      b.flipParentEdge();
+      b = b.getParent();
     }
-    for (Edge<A, B> e : toflip)
-      e.flip();
+    if (!curr.equals(newroot))
+      invalidate();
     tmproot = newroot;
   }
 
+  /**
+   * The depth of a node from the digraph's root, duplicate nodes have the
+   * distance of the atom they duplicate so use their parent.
+   */
+  private static <A, B> int depth(Node<A, B> node)
+  {
+    if (node.isDuplicate())
+      return node.getParent().getDistance() + 1;
+    return node.getDistance();
+  }
+
   void expand(Node<A, B> beg)
   {
-    final A                atom  = beg.getAtom();
-    final List<Edge<A, B>> edges = beg.getEdges();
-    final B                prev  = edges.size() > 0 && !edges.get(0).isBeg(beg) ? edges.get(0).getBond() : null;
+    checkBudget(beg);
+    int count = expandNode(beg);
+    numNodes += count;
+    if (count > 0 && beg.getDistance() >= numSpheres)
+      numSpheres = beg.getDistance() + 1;
+  }
 
-    if (MAX_NODE_DIST > 0 && beg.getDistance() > MAX_NODE_DIST)
-      return;
-    if (MAX_NODE_COUNT > 0 && numNodes >= MAX_NODE_COUNT)
-      throw new TooManyNodesException(MAX_NODE_COUNT);
+  /**
+   * Create the child nodes of the provided node.
+   *
+   * @param beg the node
+   * @return the number of nodes created
+   */
+  private int expandNode(Node<A, B> beg)
+  {
+    final A   atom = beg.getAtom();
+    final int aidx = beg.getAtomIdx();
+    final B   prev = beg.getPrevBond();
+    final int deg  = mol.getDegree(aidx);
+    int count = 0;
 
     // create 'explicit' nodes
-    for (final B bond : mol.getBonds(atom)) {
-      final A   nbr    = mol.getOther(bond, atom);
-      final int nbrIdx = mol.getAtomIdx(nbr);
-      final int bord   = mol.getBondOrder(bond);
+    for (int k = 0; k < deg; k++) {
+      final int nbrIdx = mol.getNbr(aidx, k);
+      final A   nbr    = mol.getAtom(nbrIdx);
+      final B   bond   = mol.getBond(mol.getNbrBond(aidx, k));
+      final int bord   = mol.getBondOrder(aidx, k);
 
-      if (beg.visit[nbrIdx] == 0) {
+      if (beg.getVisitDistance(nbrIdx) == 0) {
 
-        Node<A, B> end = beg.newChild(nbrIdx, nbr);
-        numNodes++;
-        addEdge(beg, bond, end);
+        beg.newChild(nbrIdx, nbr, bond);
+        count++;
 
         // duplicate nodes for bond orders (except for root atoms...)
         // for example >S=O
         if (!atom.equals(atomFocus)) {
-          if (mol.getCharge(atom) < 0 && mol.getFractionalAtomicNum(atom).getDen() > 1) {
-            end = beg.newTerminalChild(nbrIdx, nbr, Node.BOND_DUPLICATE);
-            numNodes++;
-            addEdge(beg, bond, end);
+          if (mol.getCharge(atom) < 0 && mol.getAtomicNumDenominator(aidx) > 1) {
+            beg.newTerminalChild(nbrIdx, nbr, bond, Node.BOND_DUPLICATE);
+            count++;
           } else {
             for (int i = 1; i < bord; i++) {
-              end = beg.newTerminalChild(nbrIdx, nbr, Node.BOND_DUPLICATE);
-              numNodes++;
-              addEdge(beg, bond, end);
+              beg.newTerminalChild(nbrIdx, nbr, bond, Node.BOND_DUPLICATE);
+              count++;
             }
           }
         }
@@ -211,27 +478,23 @@ public final class Digraph<A, B> {
       else if (bond.equals(prev)) {
         if (!nbr.equals(atomFocus)) {
           for (int i = 1; i < bord; i++) {
-            Node<A, B> end = beg.newTerminalChild(nbrIdx, nbr, Node.BOND_DUPLICATE);
-            numNodes++;
-            addEdge(beg, bond, end);
+            beg.newTerminalChild(nbrIdx, nbr, bond, Node.BOND_DUPLICATE);
+            count++;
           }
         }
       }
       // ring closures
       else {
-        Node<A, B> end = beg.newTerminalChild(nbrIdx, nbr, Node.RING_DUPLICATE);
-        numNodes++;
-        addEdge(beg, bond, end);
-
-        if (mol.getCharge(atom) < 0 && mol.getFractionalAtomicNum(atom).getDen() > 1) {
-          end = beg.newTerminalChild(nbrIdx, nbr, Node.BOND_DUPLICATE);
-          numNodes++;
-          addEdge(beg, bond, end);
+        beg.newTerminalChild(nbrIdx, nbr, bond, Node.RING_DUPLICATE);
+        count++;
+
+        if (mol.getCharge(atom) < 0 && mol.getAtomicNumDenominator(aidx) > 1) {
+          beg.newTerminalChild(nbrIdx, nbr, bond, Node.BOND_DUPLICATE);
+          count++;
         } else {
           for (int i = 1; i < bord; i++) {
-            end = beg.newTerminalChild(nbrIdx, nbr, Node.BOND_DUPLICATE);
-            numNodes++;
-            addEdge(beg, bond, end);
+            beg.newTerminalChild(nbrIdx, nbr, bond, Node.BOND_DUPLICATE);
+            count++;
           }
         }
       }
@@ -240,17 +503,10 @@ public final class Digraph<A, B> {
     // Create implicit hydrogen nodes
     final int hcnt = mol.getNumHydrogens(atom);
     for (int i = 0; i < hcnt; i++) {
-      Node<A, B> end = beg.newTerminalChild(-1, null, Node.IMPL_HYDROGEN);
-      numNodes++;
-      addEdge(beg, null, end);
+      beg.newTerminalChild(-1, null, null, Node.IMPL_HYDROGEN);
+      count++;
     }
-  }
-
-  private void addEdge(Node<A, B> beg, B bond, Node<A, B> end)
-  {
-    Edge<A, B> e = new Edge<>(beg, end, bond);
-    beg.add(e);
-    end.add(e);
+    return count;
   }
 
   /**
@@ -258,6 +514,8 @@ public final class Digraph<A, B> {
    * @param ref reference atom
    */
   public void setRule6Ref(A ref) {
+    if (ref != rule6Ref)
+      invalidate();
     this.rule6Ref = ref;
   }
 
@@ -24,19 +24,19 @@
  * POSSIBILITY OF SUCH DAMAGE.
  */
 
-package com.simolecule.centres;
 
-public class Edge<A, B> {
+package com.simolecule.centres;
 
-  private Node<A, B> beg, end;
-  private final B bond;
-  private Descriptor aux;
+/**
+ * A directed edge between two nodes of the hierarchical digraph.
+ *
+ * @param <A> atom type
+ * @param <B> bond type
+ */
+public abstract class Edge<A, B> {
 
-  public Edge(Node<A, B> beg, Node<A, B> end, B bond)
+  Edge()
   {
-    this.beg = beg;
-    this.end = end;
-    this.bond = bond;
   }
 
   public Node<A, B> getOther(Node<A, B> node)
@@ -49,51 +49,31 @@ public class Edge<A, B> {
       throw new IllegalArgumentException("Not an end-point of this edge!");
   }
 
-  public Node<A, B> getBeg()
-  {
-    return beg;
-  }
+  public abstract Node<A, B> getBeg();
 
-  public Node<A, B> getEnd()
-  {
-    return end;
-  }
+  public abstract Node<A, B> getEnd();
 
-  public Descriptor getAux()
-  {
-    return aux;
-  }
+  public abstract Descriptor getAux();
 
-  public void setAux(Descriptor aux)
-  {
-    this.aux = aux;
-  }
+  public abstract void setAux(Descriptor aux);
 
-  public void flip()
-  {
-    Node<A, B> tmp = end;
-    end = beg;
-    beg = tmp;
-  }
+  public abstract void flip();
 
-  public B getBond()
-  {
-    return bond;
-  }
+  public abstract B getBond();
 
   public boolean isBeg(Node<A, B> node)
   {
-    return node.equals(beg);
+    return node.equals(getBeg());
   }
 
   public boolean isEnd(Node<A, B> node)
   {
-    return node.equals(end);
+    return node.equals(getEnd());
   }
 
   @Override
   public String toString()
   {
-    return beg.toString() + "->" + end.toString();
+    return getBeg().toString() + "->" + getEnd().toString();
   }
 }
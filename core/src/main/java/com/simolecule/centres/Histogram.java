@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.simolecule.centres;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative integer values that can be updated from several
+ * threads without locking. Small values (&lt; {@link #NUM_EXACT}) have their
+ * own bucket, larger values are grouped into power of two buckets. Histograms
+ * can be merged, for example to combine the metrics of several runs.
+ */
+public final class Histogram {
+
+  /**
+   * Values below this have their own bucket.
+   */
+  public static final int NUM_EXACT = 256;
+
+  private static final int EXACT_BITS = 8;
+
+  private final AtomicLongArray counts = new AtomicLongArray(NUM_EXACT + 32 - EXACT_BITS);
+
+  private static int bucket(int value)
+  {
+    if (value < NUM_EXACT)
+      return value;
+    return NUM_EXACT + (31 - Integer.numberOfLeadingZeros(value)) - EXACT_BITS;
+  }
+
+  /**
+   * The smallest value that is counted in a bucket.
+   */
+  private static int lower(int bucket)
+  {
+    if (bucket < NUM_EXACT)
+      return bucket;
+    return 1 << (bucket - NUM_EXACT + EXACT_BITS);
+  }
+
+  /**
+   * Record a value.
+   *
+   * @param value the value (negative values are counted as 0)
+   */
+  public void add(int value)
+  {
+    counts.incrementAndGet(bucket(Math.max(0, value)));
+  }
+
+  /**
+   * Add all the counts of another histogram to this one.
+   *
+   * @param other the other histogram
+   */
+  public void merge(Histogram other)
+  {
+    for (int i = 0; i < counts.length(); i++) {
+      long count = other.counts.get(i);
+      if (count != 0)
+        counts.addAndGet(i, count);
+    }
+  }
+
+  /**
+   * The total number of values recorded.
+   */
+  public long getCount()
+  {
+    long total = 0;
+    for (int i = 0; i < counts.length(); i++)
+      total += counts.get(i);
+    return total;
+  }
+
+  /**
+   * Number of values recorded in the bucket holding the provided value.
+   *
+   * @param value the value
+   * @return the count
+   */
+  public long getCount(int value)
+  {
+    return counts.get(bucket(Math.max(0, value)));
+  }
+
+  /**
+   * An (approximate) percentile of the values, i.e. the lower bound of
+   * the bucket containing the percentile.
+   *
+   * @param pct the percentile (0-100)
+   * @return the value
+   */
+  public int getPercentile(double pct)
+  {
+    long total = getCount();
+    if (total == 0)
+      return 0;
+    long rank = (long) Math.ceil(total * pct / 100);
+    long sum  = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      sum += counts.get(i);
+      if (sum >= rank && sum > 0)
+        return lower(i);
+    }
+    return lower(counts.length() - 1);
+  }
+
+  /**
+   * Tab separated lines of the non-empty buckets (lower bound, count).
+   */
+  @Override
+  public String toString()
+  {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < counts.length(); i++) {
+      long count = counts.get(i);
+      if (count != 0)
+        sb.append(lower(i)).append('\t').append(count).append('\n');
+    }
+    return sb.toString();
+  }
+}
@@ -26,10 +26,6 @@
 
 package com.simolecule.centres;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
-
 /**
  * From Blue Obelisk Data Repository.
  *
@@ -415,36 +411,41 @@ public enum Isotope {
   private final int    massnum;
   private final double weight;
 
-  private static final class Key {
-    private final int atomnum;
-    private final int massnum;
+  // dense tables indexed by atomic number then mass number offset, slot 0
+  // is the natural abundance (massnum=0) and slot i is massnum=minMass+i-1
+  private static final int[]       minMass;
+  private static final Isotope[][] table;
+  private static final double[][]  weights;
 
-    public Key(int atomnum, int massnum) {
-      this.atomnum = atomnum;
-      this.massnum = massnum;
+  static {
+    int maxAtomNum = 0;
+    for (Isotope isotope : values())
+      maxAtomNum = Math.max(maxAtomNum, isotope.atomnum);
+    int[] maxMass = new int[maxAtomNum + 1];
+    minMass = new int[maxAtomNum + 1];
+    for (Isotope isotope : values()) {
+      int z = isotope.atomnum;
+      if (isotope.massnum == 0)
+        continue;
+      if (minMass[z] == 0 || isotope.massnum < minMass[z])
+        minMass[z] = isotope.massnum;
+      if (isotope.massnum > maxMass[z])
+        maxMass[z] = isotope.massnum;
     }
-
-    @Override
-    public boolean equals(Object o) {
-      if (this == o) return true;
-      if (o == null || getClass() != o.getClass()) return false;
-      Key key = (Key) o;
-      return atomnum == key.atomnum && massnum == key.massnum;
+    table = new Isotope[maxAtomNum + 1][];
+    weights = new double[maxAtomNum + 1][];
+    for (int z = 0; z <= maxAtomNum; z++) {
+      int len = maxMass[z] == 0 ? 1 : 2 + maxMass[z] - minMass[z];
+      table[z] = new Isotope[len];
+      weights[z] = new double[len];
     }
-
-    @Override
-    public int hashCode() {
-      return Objects.hash(atomnum, massnum);
+    for (Isotope isotope : values()) {
+      int i = slot(isotope.atomnum, isotope.massnum);
+      table[isotope.atomnum][i] = isotope;
+      weights[isotope.atomnum][i] = isotope.weight;
     }
   }
 
-  private static final Map<Key,Isotope> map = new HashMap<>();
-
-  static {
-    for (Isotope isotope : values())
-      map.put(new Key(isotope.atomnum, isotope.massnum), isotope);
-  }
-
   Isotope(int atomnum, int massnum, double weight)
   {
     this.atomnum = atomnum;
@@ -456,8 +457,44 @@ public enum Isotope {
     return weight;
   }
 
+  int getAtomicNum() {
+    return atomnum;
+  }
+
+  int getMassNum() {
+    return massnum;
+  }
+
+  private static int slot(int atomnum, int massnum)
+  {
+    if (atomnum < 0 || atomnum >= table.length)
+      return -1;
+    if (massnum == 0)
+      return 0;
+    int i = 1 + massnum - minMass[atomnum];
+    return i > 0 && i < table[atomnum].length ? i : -1;
+  }
+
   public static Isotope find(int atomnum, int massnum)
   {
-    return map.get(new Key(atomnum, massnum));
+    int i = slot(atomnum, massnum);
+    return i < 0 ? null : table[atomnum][i];
+  }
+
+  /**
+   * The weight of an isotope, the natural abundance weight if the mass
+   * number is 0. If the isotope is unknown the mass number is returned.
+   *
+   * @param atomnum the atomic number
+   * @param massnum the mass number
+   * @return the weight
+   */
+  public static double getWeight(int atomnum, int massnum)
+  {
+    int i = slot(atomnum, massnum);
+    if (i < 0)
+      return massnum;
+    double weight = weights[atomnum][i];
+    return weight != 0 ? weight : massnum;
   }
 }
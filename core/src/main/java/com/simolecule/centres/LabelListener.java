@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.simolecule.centres;
+
+import com.simolecule.centres.config.Configuration;
+
+/**
+ * Receives an event before and after each configuration is labelled, for
+ * example to trace or profile a slow batch. Events may be delivered from
+ * several threads when labelling in parallel. No traces are recorded (and
+ * nothing is timed) unless a listener is set.
+ *
+ * @param <A> atom type
+ * @param <B> bond type
+ * @see Labeller#setListener(LabelListener)
+ * @see SlowCentreProfiler
+ */
+public interface LabelListener<A, B> {
+
+  /**
+   * A configuration is about to be labelled.
+   *
+   * @param mol  the molecule
+   * @param conf the configuration
+   */
+  void begin(BaseMol<A, B> mol, Configuration<A, B> conf);
+
+  /**
+   * A configuration has been labelled.
+   *
+   * @param mol   the molecule
+   * @param conf  the configuration
+   * @param trace what was done to label it
+   */
+  void end(BaseMol<A, B> mol, Configuration<A, B> conf, LabelTrace trace);
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.simolecule.centres;
+
+/**
+ * What was done to label a single configuration, see {@link LabelListener}.
+ */
+public final class LabelTrace {
+
+  private final Descriptor desc;
+  private final int        ruleIdx;
+  private final boolean    prePass;
+  private final int        numNodes;
+  private final int        numSpheres;
+  private final long       numComparisons;
+  private final long       elapsedNanos;
+  private final int        numAux;
+  private final int        numAuxLabelled;
+  private final int        numAuxCacheHits;
+
+  LabelTrace(Descriptor desc, int ruleIdx, boolean prePass,
+             int numNodes, int numSpheres, long numComparisons, long elapsedNanos,
+             int numAux, int numAuxLabelled, int numAuxCacheHits)
+  {
+    this.desc = desc;
+    this.ruleIdx = ruleIdx;
+    this.prePass = prePass;
+    this.numNodes = numNodes;
+    this.numSpheres = numSpheres;
+    this.numComparisons = numComparisons;
+    this.elapsedNanos = elapsedNanos;
+    this.numAux = numAux;
+    this.numAuxLabelled = numAuxLabelled;
+    this.numAuxCacheHits = numAuxCacheHits;
+  }
+
+  /**
+   * The label assigned.
+   *
+   * @return the label, null if none
+   */
+  public Descriptor getDescriptor()
+  {
+    return desc;
+  }
+
+  /**
+   * The index of the rule that decided the label (see
+   * {@link Stats#RULE_NAMES}).
+   *
+   * @return the rule index, -1 if not decided
+   */
+  public int getRuleIdx()
+  {
+    return ruleIdx;
+  }
+
+  /**
+   * The name of the rule that decided the label.
+   *
+   * @return the rule name, null if not decided
+   */
+  public String getRuleName()
+  {
+    return ruleIdx >= 0 && ruleIdx < Stats.RULE_NAMES.length ? Stats.RULE_NAMES[ruleIdx] : null;
+  }
+
+  /**
+   * The configuration was labelled by the constitutional pre-pass, no
+   * digraph was built.
+   *
+   * @return labelled by the pre-pass
+   */
+  public boolean isPrePass()
+  {
+    return prePass;
+  }
+
+  /**
+   * Number of digraph nodes created (expanded).
+   */
+  public int getNumNodes()
+  {
+    return numNodes;
+  }
+
+  /**
+   * The deepest sphere of the digraph.
+   */
+  public int getNumSpheres()
+  {
+    return numSpheres;
+  }
+
+  /**
+   * Number of ligand comparisons made, including those answered from the
+   * digraph's memo.
+   */
+  public long getNumComparisons()
+  {
+    return numComparisons;
+  }
+
+  /**
+   * Time taken to label the configuration.
+   */
+  public long getElapsedNanos()
+  {
+    return elapsedNanos;
+  }
+
+  /**
+   * Whether auxiliary descriptors were required (rules 3-6).
+   */
+  public boolean isAuxRequired()
+  {
+    return numAux > 0;
+  }
+
+  /**
+   * Number of auxiliary descriptors required.
+   */
+  public int getNumAux()
+  {
+    return numAux;
+  }
+
+  /**
+   * Number of the auxiliary descriptors required that were labelled.
+   */
+  public int getNumAuxLabelled()
+  {
+    return numAuxLabelled;
+  }
+
+  /**
+   * Number of the auxiliary descriptors required that were reused from the
+   * cache rather than labelled in the digraph.
+   */
+  public int getNumAuxCacheHits()
+  {
+    return numAuxCacheHits;
+  }
+
+  /**
+   * Metrics for a single configuration, events are passed on to the
+   * labeller's metrics.
+   */
+  static final class Recorder implements LabellingMetrics {
+
+    private final LabellingMetrics delegate;
+
+    private Digraph<?, ?> digraph;
+    private int           ruleIdx = -1;
+    private boolean       prePass;
+    private int           numAux, numAuxLabelled, numAuxCacheHits;
+
+    Recorder(LabellingMetrics delegate)
+    {
+      this.delegate = delegate;
+    }
+
+    LabelTrace trace(Descriptor desc, long elapsedNanos)
+    {
+      int  numNodes       = 0;
+      int  numSpheres     = 0;
+      long numComparisons = 0;
+      if (digraph != null) {
+        numNodes = digraph.getNumNodes();
+        numSpheres = digraph.getNumSpheres();
+        ComparisonCache<?, ?> cache = digraph.getComparisonCache();
+        numComparisons = cache.getNumHits() + cache.getNumMisses();
+      }
+      return new LabelTrace(desc, desc != null ? ruleIdx : -1, prePass,
+                            numNodes, numSpheres, numComparisons, elapsedNanos,
+                            numAux, numAuxLabelled, numAuxCacheHits);
+    }
+
+    @Override
+    public void countConfigs(int numConfigs)
+    {
+      delegate.countConfigs(numConfigs);
+    }
+
+    @Override
+    public void countLabelled(Descriptor desc)
+    {
+      delegate.countLabelled(desc);
+    }
+
+    @Override
+    public void countAux(int numCalculated, int numLabelled)
+    {
+      numAux += numCalculated;
+      numAuxLabelled += numLabelled;
+      delegate.countAux(numCalculated, numLabelled);
+    }
+
+    @Override
+    public void countRule(int ruleIdx)
+    {
+      this.ruleIdx = ruleIdx;
+      delegate.countRule(ruleIdx);
+    }
+
+    @Override
+    public void countPrePass(boolean labelled)
+    {
+      prePass = labelled;
+      delegate.countPrePass(labelled);
+    }
+
+    @Override
+    public void countAuxCache(int numHits, int numMisses)
+    {
+      numAuxCacheHits += numHits;
+      delegate.countAuxCache(numHits, numMisses);
+    }
+
+    @Override
+    public <A, B> void measureDigraph(Digraph<A, B> digraph)
+    {
+      this.digraph = digraph;
+      delegate.measureDigraph(digraph);
+    }
+  }
+}
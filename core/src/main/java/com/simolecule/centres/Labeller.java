@@ -27,25 +27,284 @@
 package com.simolecule.centres;
 
 import com.simolecule.centres.config.Configuration;
+import com.simolecule.centres.config.Tetrahedral;
 import com.simolecule.centres.rules.*;
 
 import java.util.AbstractMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public class Labeller<A, B> {
 
+  private Digraph.Storage     storage  = Digraph.Storage.Linked;
+  private Digraph.Ancestry    ancestry = Digraph.Ancestry.VisitArray;
+  private ExecutorService     executor = null;
+  private LabellingMetrics    metrics  = LabellingMetrics.NONE;
+  private boolean             prePass  = true;
+  private boolean             auxCache = true;
+  private LabelListener<A, B> listener = null;
+  private boolean             compact  = false;
+
+  /**
+   * Set how the digraphs built by this labeller store their nodes, the
+   * labels assigned do not depend on the storage used.
+   *
+   * @param storage the digraph storage
+   */
+  public void setDigraphStorage(Digraph.Storage storage) {
+    this.storage = storage;
+  }
+
+  public Digraph.Storage getDigraphStorage() {
+    return storage;
+  }
+
+  /**
+   * Set how the digraphs built by this labeller track the atoms visited from
+   * the root, the labels assigned do not depend on the mode used.
+   *
+   * @param ancestry the ancestry mode
+   */
+  public void setDigraphAncestry(Digraph.Ancestry ancestry) {
+    this.ancestry = ancestry;
+  }
+
+  public Digraph.Ancestry getDigraphAncestry() {
+    return ancestry;
+  }
+
+  /**
+   * Label the configurations of each molecule in parallel on the provided
+   * executor (e.g. a {@link java.util.concurrent.ForkJoinPool}), the labels
+   * are identical to those assigned sequentially. The labeller does not
+   * shut down the executor.
+   *
+   * @param executor the executor, null to label sequentially (default)
+   */
+  public void setExecutor(ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  public ExecutorService getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Set the metrics that labelling runs are reported to, the metrics must be
+   * thread-safe if an executor is also set.
+   *
+   * @param metrics the metrics, null to not collect any (default)
+   * @see ConcurrentMetrics
+   */
+  public void setMetrics(LabellingMetrics metrics) {
+    this.metrics = metrics != null ? metrics : LabellingMetrics.NONE;
+  }
+
+  public LabellingMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Set whether tetrahedral centres whose ligands are separated by their
+   * first two spheres are labelled directly from the molecule, without
+   * building a digraph (default true). The labels assigned are the same
+   * either way. A configuration labelled by the pre-pass is given a digraph
+   * rooted at its focus that has not been expanded, {@link
+   * Configuration#getDigraph()} works as before and the nodes are created on
+   * demand if the caller walks it.
+   *
+   * @param prePass use the constitutional pre-pass
+   * @see Tetrahedral#labelFirstSpheres
+   */
+  public void setConstitutionalPrePass(boolean prePass) {
+    this.prePass = prePass;
+  }
+
+  public boolean isConstitutionalPrePass() {
+    return prePass;
+  }
+
+  /**
+   * Set whether auxiliary descriptors that do not depend on the root of the
+   * digraph are calculated once per molecule and reused in the digraph of
+   * each centre (default true). The labels assigned are the same either
+   * way. The cache is not used by {@link #relabel}, a cached descriptor does
+   * not expand the subtree it was decided by so the atoms it depends on would
+   * be missing from the record.
+   *
+   * @param auxCache cache root independent auxiliary descriptors
+   * @see Tetrahedral#labelFirstSpheres(BaseMol, int)
+   */
+  public void setAuxDescriptorCache(boolean auxCache) {
+    this.auxCache = auxCache;
+  }
+
+  public boolean isAuxDescriptorCache() {
+    return auxCache;
+  }
+
+  /**
+   * Set a listener that is told when each configuration is labelled and
+   * receives a trace of the work done, the listener must be thread-safe if
+   * an executor is also set. Without a listener nothing is traced.
+   *
+   * @param listener the listener, null for none (default)
+   * @see SlowCentreProfiler
+   */
+  public void setListener(LabelListener<A, B> listener) {
+    this.listener = listener;
+  }
+
+  public LabelListener<A, B> getListener() {
+    return listener;
+  }
+
+  /**
+   * Set whether each molecule is first copied to a {@link CompactMol} and
+   * labelled on that view (default false). This is worthwhile when the
+   * molecule's atom/bond index or neighbour lookups are slow, the labels are
+   * set on the original molecule.
+   *
+   * @param compact label on a compact view
+   */
+  public void setCompactView(boolean compact) {
+    this.compact = compact;
+  }
+
+  public boolean isCompactView() {
+    return compact;
+  }
+
   public void label(BaseMol<A, B> mol, List<Configuration<A, B>> configs) {
+    label(mol, configs, LabellingBudget.DEFAULT);
+  }
+
+  /**
+   * Label the configurations of a molecule within the provided budget,
+   * configurations that exceed the budget are labelled
+   * {@link Descriptor#BudgetExceeded}.
+   *
+   * @param mol     the molecule
+   * @param configs the configurations to label
+   * @param budget  the labelling budget
+   */
+  public void label(BaseMol<A, B> mol, List<Configuration<A, B>> configs, LabellingBudget budget) {
+    label(mol, configs, configs, budget, null);
+  }
+
+  /**
+   * Label the configurations of a molecule incrementally after an edit,
+   * only configurations whose digraph reached a changed atom when last
+   * labelled are labelled again, the others have their previous descriptor
+   * (held in the record) set. The changed atoms should include the atoms of
+   * any bond added, removed or modified, any atom whose properties
+   * (element, charge, isotope, hydrogen count) or stereo configuration was
+   * changed, and any atom added. If the record is empty all configurations
+   * are labelled, it is updated with the new labels.
+   *
+   * @param mol          the molecule
+   * @param configs      the configurations to label
+   * @param changedAtoms the atoms changed since the record was made
+   * @param record       the record of the previous labelling
+   */
+  public void relabel(BaseMol<A, B> mol, List<Configuration<A, B>> configs,
+                      Collection<A> changedAtoms, LabellingRecord<A, B> record) {
+    List<Configuration<A, B>> targets = record.reuse(mol, configs, changedAtoms);
+    if (!targets.isEmpty())
+      label(mol, configs, targets, LabellingBudget.DEFAULT, record);
+  }
+
+  /**
+   * Label the target configurations, all the configurations are used for
+   * auxiliary descriptors.
+   */
+  private void label(BaseMol<A, B> mol, List<Configuration<A, B>> configs, List<Configuration<A, B>> targets,
+                     LabellingBudget budget, LabellingRecord<A, B> record) {
+    final long deadline = budget.deadline();
+    if (compact && !(mol instanceof CompactMol))
+      mol = new CompactMol<>(mol);
+    metrics.countConfigs(targets.size());
+    // the record must see every atom an auxiliary descriptor depends on
+    final AuxDescriptorCache<A, B> cache = auxCache && record == null ? new AuxDescriptorCache<>(mol, configs) : null;
+    if (executor != null && targets.size() > 1) {
+      labelParallel(mol, configs, targets, budget, deadline, record, cache);
+      return;
+    }
+    final Rules<A, B> begRules = createBegRules(mol);
+    final Rules<A, B> allRules = createAllRules(mol);
+    for (Configuration<A, B> conf : targets) {
+      Descriptor desc = label(mol, configs, conf, begRules, allRules, budget, deadline, record, cache);
+      if (desc != null)
+        conf.setPrimaryLabel(mol, desc);
+      else
+        conf.clearPrimaryLabel(mol);
+    }
+  }
+
+  private void labelParallel(final BaseMol<A, B> mol,
+                             final List<Configuration<A, B>> configs,
+                             final List<Configuration<A, B>> targets,
+                             final LabellingBudget budget,
+                             final long deadline,
+                             final LabellingRecord<A, B> record,
+                             final AuxDescriptorCache<A, B> cache) {
+    // the rules (and their sorters) hold state so each task has its own
+    List<Future<Descriptor>> futures = new ArrayList<>(targets.size());
+    for (final Configuration<A, B> conf : targets) {
+      futures.add(executor.submit(new Callable<Descriptor>() {
+        @Override
+        public Descriptor call() {
+          return label(mol, configs, conf, createBegRules(mol), createAllRules(mol), budget, deadline, record, cache);
+        }
+      }));
+    }
+    // labels are only set once all configurations are done, on this thread
+    Descriptor[] descs = new Descriptor[targets.size()];
+    try {
+      for (int i = 0; i < descs.length; i++)
+        descs[i] = futures.get(i).get();
+    } catch (InterruptedException e) {
+      for (Future<Descriptor> future : futures)
+        future.cancel(true);
+      Thread.currentThread().interrupt();
+      return;
+    } catch (ExecutionException e) {
+      for (Future<Descriptor> future : futures)
+        future.cancel(true);
+      if (e.getCause() instanceof Error)
+        throw (Error) e.getCause();
+      throw new IllegalStateException(e.getCause());
+    }
+    for (int i = 0; i < descs.length; i++) {
+      if (descs[i] != null)
+        targets.get(i).setPrimaryLabel(mol, descs[i]);
+      else
+        targets.get(i).clearPrimaryLabel(mol);
+    }
+  }
+
+  private Rules<A, B> createBegRules(BaseMol<A, B> mol) {
     // constitutional rules
     @SuppressWarnings("unchecked")
     final Rules<A, B> begRules = new Rules<>(new Rule1a<>(mol),
                                              new Rule1b<>(mol),
                                              new Rule2<>(mol)
     );
+    return begRules;
+  }
+
+  private Rules<A, B> createAllRules(BaseMol<A, B> mol) {
     // all rules (require aux calc)
     @SuppressWarnings("unchecked")
     final Rules<A, B> allRules = new Rules<>(new Rule1a<>(mol),
@@ -58,41 +317,159 @@ public class Labeller<A, B> {
                                              new Rule5New<>(mol),
                                              new Rule6<>(mol)
     );
+    return allRules;
+  }
 
-    for (Configuration<A, B> conf : configs) {
-      conf.setDigraph(new Digraph<>(mol));
-      try {
-        Descriptor desc = conf.label(begRules);
-        if (desc != null && desc != Descriptor.Unknown) {
-          conf.setPrimaryLabel(mol, desc);
-        } else {
-          if (labelAux(configs, allRules, conf)) {
-            desc = conf.label(allRules);
-            if (desc != null && desc != Descriptor.Unknown) {
-              conf.setPrimaryLabel(mol, desc);
-            }
-          }
-        }
-      } catch (Exception e) {
-        System.err.println(e.getMessage());
+  /**
+   * Label a single configuration, the label is returned rather than set on
+   * the molecule.
+   *
+   * @return the label, null if none could be assigned
+   */
+  private Descriptor label(BaseMol<A, B> mol,
+                           List<Configuration<A, B>> configs,
+                           Configuration<A, B> conf,
+                           Rules<A, B> begRules,
+                           Rules<A, B> allRules,
+                           LabellingBudget budget,
+                           long deadline,
+                           LabellingRecord<A, B> record,
+                           AuxDescriptorCache<A, B> cache) {
+    if (listener == null)
+      return label(mol, configs, conf, begRules, allRules, budget, deadline, record, cache, metrics);
+    LabelTrace.Recorder recorder = new LabelTrace.Recorder(metrics);
+    listener.begin(mol, conf);
+    long       t0   = System.nanoTime();
+    Descriptor desc = label(mol, configs, conf, begRules, allRules, budget, deadline, record, cache, recorder);
+    long       t1   = System.nanoTime();
+    listener.end(mol, conf, recorder.trace(desc, t1 - t0));
+    return desc;
+  }
+
+  private Descriptor label(BaseMol<A, B> mol,
+                           List<Configuration<A, B>> configs,
+                           Configuration<A, B> conf,
+                           Rules<A, B> begRules,
+                           Rules<A, B> allRules,
+                           LabellingBudget budget,
+                           long deadline,
+                           LabellingRecord<A, B> record,
+                           AuxDescriptorCache<A, B> cache,
+                           LabellingMetrics metrics) {
+    if (prePass && conf instanceof Tetrahedral) {
+      Set<A>     reach = record != null ? new HashSet<A>() : null;
+      Descriptor desc  = ((Tetrahedral<A, B>) conf).labelFirstSpheres(mol, reach);
+      metrics.countPrePass(desc != null);
+      if (desc != null) {
+        // unexpanded, nodes are only created if a caller walks it
+        Digraph<A, B> digraph = newDigraph(mol, budget, deadline, metrics);
+        digraph.init(conf.getFocus());
+        conf.setDigraph(digraph);
+        metrics.countRule(0);
+        metrics.countLabelled(desc);
+        if (record != null)
+          record.put(conf, desc, reach);
+        return desc;
+      }
+    }
+    Digraph<A, B> digraph = newDigraph(mol, budget, deadline, metrics);
+    conf.setDigraph(digraph);
+    Descriptor desc = labelDigraph(configs, conf, begRules, allRules, cache);
+    if (desc != null && desc != Descriptor.BudgetExceeded)
+      metrics.countLabelled(desc);
+    metrics.measureDigraph(digraph);
+    if (record != null)
+      record.put(conf, desc, digraph);
+    return desc;
+  }
+
+  private Digraph<A, B> newDigraph(BaseMol<A, B> mol,
+                                   LabellingBudget budget,
+                                   long deadline,
+                                           LabellingMetrics metrics) {
+    Digraph<A, B> digraph = new Digraph<>(mol, storage, ancestry);
+    digraph.setBudget(budget, deadline);
+    digraph.setMetrics(metrics);
+    return digraph;
+  }
+
+  private Descriptor labelDigraph(List<Configuration<A, B>> configs,
+                                  Configuration<A, B> conf,
+                                  Rules<A, B> begRules,
+                                  Rules<A, B> allRules,
+                                  AuxDescriptorCache<A, B> cache) {
+    try {
+      Descriptor desc = conf.label(begRules);
+      if (desc != null && desc != Descriptor.Unknown)
+        return desc;
+      if (labelAux(configs, allRules, conf, cache)) {
+        desc = conf.label(allRules);
+        if (desc != null && desc != Descriptor.Unknown)
+          return desc;
       }
+    } catch (BudgetExceededException e) {
+      return Descriptor.BudgetExceeded;
+    } catch (Exception e) {
+      System.err.println(e.getMessage());
     }
+    return null;
   }
 
   private boolean labelAux(List<Configuration<A, B>> configs,
                            Rules<A, B> rules,
-                           Configuration<A, B> center) {
-    List<Map.Entry<Node<A, B>, Configuration<A, B>>> aux = new ArrayList<>();
-
+                           Configuration<A, B> center,
+                           AuxDescriptorCache<A, B> cache) {
     Digraph<A, B> digraph = center.getDigraph();
-    for (Configuration<A, B> config : configs) {
+
+    // index the other configurations by their (first) focus atom
+    Map<A, List<Integer>> focusIndex = new HashMap<>();
+    for (int i = 0; i < configs.size(); i++) {
+      Configuration<A, B> config = configs.get(i);
       if (config.equals(center))
         continue;
       // FIXME: specific to each descriptor
-      A[] foci = config.getFoci();
-      for (Node<A, B> node : digraph.getNodes(foci[0])) {
-        if (node.isDuplicate())
-          continue;
+      A             focus = config.getFoci()[0];
+      List<Integer> idxs  = focusIndex.get(focus);
+      if (idxs == null)
+        focusIndex.put(focus, idxs = new ArrayList<>(1));
+      idxs.add(i);
+    }
+
+    // one traversal of the digraph finds the occurrences of every focus
+    List<List<Node<A, B>>> occurrences = new ArrayList<>(configs.size());
+    for (int i = 0; i < configs.size(); i++)
+      occurrences.add(null);
+    if (!focusIndex.isEmpty()) {
+      Deque<Node<A, B>> queue = new ArrayDeque<>();
+      queue.add(digraph.getCurrRoot());
+      while (!queue.isEmpty()) {
+        Node<A, B>    node = queue.poll();
+        List<Integer> idxs = node.isDuplicate() ? null : focusIndex.get(node.getAtom());
+        if (idxs != null) {
+          for (Integer i : idxs) {
+            List<Node<A, B>> nodes = occurrences.get(i);
+            if (nodes == null)
+              occurrences.set(i, nodes = new ArrayList<>());
+            nodes.add(node);
+          }
+        }
+        for (Edge<A, B> e : node.getEdges()) {
+          if (e.isBeg(node))
+            queue.add(e.getEnd());
+        }
+      }
+    }
+
+    // bucket the occurrences by distance, the deepest are labelled first
+    List<List<Map.Entry<Node<A, B>, Integer>>> buckets = new ArrayList<>();
+    int                                        numAux  = 0;
+    for (int i = 0; i < configs.size(); i++) {
+      List<Node<A, B>> nodes = occurrences.get(i);
+      if (nodes == null)
+        continue;
+      Configuration<A, B> config = configs.get(i);
+      A[]                 foci   = config.getFoci();
+      for (Node<A, B> node : nodes) {
         Node<A, B> low = node;
         if (foci.length == 2) {
           for (Edge<A, B> edge : node.getEdges(foci[1])) {
@@ -100,41 +477,47 @@ public class Labeller<A, B> {
               low = edge.getOther(node);
           }
         }
-        if (!low.isDuplicate())
-          aux.add(new AbstractMap.SimpleImmutableEntry<>(low, config));
+        if (low.isDuplicate())
+          continue;
+        int dist = low.getDistance();
+        while (buckets.size() <= dist)
+          buckets.add(null);
+        List<Map.Entry<Node<A, B>, Integer>> bucket = buckets.get(dist);
+        if (bucket == null)
+          buckets.set(dist, bucket = new ArrayList<>());
+        bucket.add(new AbstractMap.SimpleImmutableEntry<>(low, i));
+        numAux++;
       }
     }
 
-    Collections.sort(aux,
-                     new Comparator<Map.Entry<Node<A, B>, Configuration<A, B>>>() {
-                       @Override
-                       public int compare(
-                               Map.Entry<Node<A, B>, Configuration<A, B>> a,
-                               Map.Entry<Node<A, B>, Configuration<A, B>> b) {
-                         return -Integer.compare(a.getKey().getDistance(),
-                                                 b.getKey().getDistance());
-                       }
-                     });
-
-    Map<Node<A, B>, Descriptor> queue = new HashMap<>();
-    int                         prev  = Integer.MAX_VALUE;
-    for (Map.Entry<Node<A, B>, Configuration<A, B>> e : aux) {
-      Node<A, B> node = e.getKey();
-
-      if (node.getDistance() < prev) {
-        for (Map.Entry<Node<A, B>, Descriptor> e2 : queue.entrySet())
-          e2.getKey().setAux(e2.getValue());
-        queue.clear();
-        prev = node.getDistance();
+    // labels are assigned after each sphere so those at the same distance
+    // do not influence each other
+    Map<Node<A, B>, Descriptor> queue       = new HashMap<>();
+    int                         numLabelled = 0;
+    int                         numHits     = 0;
+    for (int dist = buckets.size() - 1; dist >= 0; dist--) {
+      List<Map.Entry<Node<A, B>, Integer>> bucket = buckets.get(dist);
+      if (bucket == null)
+        continue;
+      for (Map.Entry<Node<A, B>, Integer> e : bucket) {
+        Descriptor label = cache != null ? cache.get(e.getValue(), e.getKey()) : null;
+        if (label != null)
+          numHits++;
+        else
+          label = configs.get(e.getValue()).label(e.getKey(), digraph, rules);
+        if (label != null && label != Descriptor.Unknown)
+          numLabelled++;
+        queue.put(e.getKey(), label);
       }
-      Configuration<A, B> config = e.getValue();
-      Descriptor          label  = config.label(node, digraph, rules);
-      queue.put(node, label);
+      for (Map.Entry<Node<A, B>, Descriptor> e : queue.entrySet())
+        e.getKey().setAux(e.getValue());
+      queue.clear();
     }
 
-    for (Map.Entry<Node<A, B>, Descriptor> e : queue.entrySet())
-      e.getKey().setAux(e.getValue());
-
+    LabellingMetrics metrics = digraph.getMetrics();
+    metrics.countAux(numAux, numLabelled);
+    if (cache != null)
+      metrics.countAuxCache(numHits, numAux - numHits);
     return true;
   }
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.simolecule.centres;
+
+/**
+ * Limits on the resources used when labelling the configurations of a
+ * molecule. The node count, depth and approximate memory are limits on each
+ * digraph built while the time is a limit on the whole call to
+ * {@link Labeller#label(BaseMol, java.util.List, LabellingBudget)}. A limit
+ * of 0 is unlimited. When a configuration exceeds the budget it is labelled
+ * {@link Descriptor#BudgetExceeded}.
+ *
+ * <pre>
+ * LabellingBudget budget = LabellingBudget.DEFAULT.withMaxMillis(500)
+ *                                                 .withMaxBytes(64L &lt;&lt; 20);
+ * </pre>
+ */
+public final class LabellingBudget {
+
+  /**
+   * No limits.
+   */
+  public static final LabellingBudget UNLIMITED = new LabellingBudget(0, 0, 0, 0);
+
+  /**
+   * The default budget, at most 100,000 nodes per digraph.
+   */
+  public static final LabellingBudget DEFAULT = new LabellingBudget(100000, 0, 0, 0);
+
+  private final int  maxNodes;
+  private final int  maxDepth;
+  private final long maxMillis;
+  private final long maxBytes;
+
+  /**
+   * Create a new budget.
+   *
+   * @param maxNodes  maximum number of nodes in a digraph
+   * @param maxDepth  maximum distance of a node from the root (root=1)
+   * @param maxMillis maximum wall-clock time in milliseconds
+   * @param maxBytes  maximum approximate size of a digraph in bytes
+   */
+  public LabellingBudget(int maxNodes, int maxDepth, long maxMillis, long maxBytes)
+  {
+    if (maxNodes < 0 || maxDepth < 0 || maxMillis < 0 || maxBytes < 0)
+      throw new IllegalArgumentException("Budget limits must be >= 0");
+    this.maxNodes = maxNodes;
+    this.maxDepth = maxDepth;
+    this.maxMillis = maxMillis;
+    this.maxBytes = maxBytes;
+  }
+
+  public int getMaxNodes()
+  {
+    return maxNodes;
+  }
+
+  public int getMaxDepth()
+  {
+    return maxDepth;
+  }
+
+  public long getMaxMillis()
+  {
+    return maxMillis;
+  }
+
+  public long getMaxBytes()
+  {
+    return maxBytes;
+  }
+
+  public LabellingBudget withMaxNodes(int maxNodes)
+  {
+    return new LabellingBudget(maxNodes, maxDepth, maxMillis, maxBytes);
+  }
+
+  public LabellingBudget withMaxDepth(int maxDepth)
+  {
+    return new LabellingBudget(maxNodes, maxDepth, maxMillis, maxBytes);
+  }
+
+  public LabellingBudget withMaxMillis(long maxMillis)
+  {
+    return new LabellingBudget(maxNodes, maxDepth, maxMillis, maxBytes);
+  }
+
+  public LabellingBudget withMaxBytes(long maxBytes)
+  {
+    return new LabellingBudget(maxNodes, maxDepth, maxMillis, maxBytes);
+  }
+
+  /**
+   * Compute the deadline ({@link System#nanoTime()}) of a call started now,
+   * 0 if there is no time limit.
+   *
+   * @return the deadline
+   */
+  public long deadline()
+  {
+    if (maxMillis == 0)
+      return 0;
+    long deadline = System.nanoTime() + maxMillis * 1000000L;
+    return deadline != 0 ? deadline : 1;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "LabellingBudget{nodes=" + maxNodes +
+           ", depth=" + maxDepth +
+           ", millis=" + maxMillis +
+           ", bytes=" + maxBytes + '}';
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.simolecule.centres;
+
+/**
+ * Receives events from a labelling run, implementations may record them as
+ * they see fit. Events may be delivered from several threads when labelling
+ * in parallel.
+ *
+ * @see Labeller#setMetrics(LabellingMetrics)
+ * @see ConcurrentMetrics
+ * @see Stats
+ */
+public interface LabellingMetrics {
+
+  /**
+   * Metrics that ignore all events (the default).
+   */
+  LabellingMetrics NONE = new LabellingMetrics() {
+    @Override
+    public void countConfigs(int numConfigs)
+    {
+    }
+
+    @Override
+    public void countLabelled(Descriptor desc)
+    {
+    }
+
+    @Override
+    public void countAux(int numCalculated, int numLabelled)
+    {
+    }
+
+    @Override
+    public void countRule(int ruleIdx)
+    {
+    }
+
+    @Override
+    public void countPrePass(boolean labelled)
+    {
+    }
+
+    @Override
+    public void countAuxCache(int numHits, int numMisses)
+    {
+    }
+
+    @Override
+    public <A, B> void measureDigraph(Digraph<A, B> digraph)
+    {
+    }
+  };
+
+  /**
+   * A molecule with the specified number of configurations is being labelled.
+   *
+   * @param numConfigs number of configurations
+   */
+  void countConfigs(int numConfigs);
+
+  /**
+   * A configuration was assigned a label.
+   *
+   * @param desc the label
+   */
+  void countLabelled(Descriptor desc);
+
+  /**
+   * Auxiliary descriptors were calculated for a configuration.
+   *
+   * @param numCalculated number of auxiliary descriptors calculated
+   * @param numLabelled   number of those that were labelled
+   */
+  void countAux(int numCalculated, int numLabelled);
+
+  /**
+   * A configuration was decided by the rule with the specified index
+   * (see {@link Stats#RULE_NAMES}).
+   *
+   * @param ruleIdx rule index
+   */
+  void countRule(int ruleIdx);
+
+  /**
+   * A configuration was tried with the constitutional pre-pass, if it was
+   * labelled no digraph was built for it.
+   *
+   * @param labelled the pre-pass assigned the label
+   * @see com.simolecule.centres.config.Tetrahedral#labelFirstSpheres
+   */
+  void countPrePass(boolean labelled);
+
+  /**
+   * Auxiliary descriptors for a configuration were taken from the cache of
+   * root independent descriptors (hits) or labelled in its digraph (misses).
+   *
+   * @param numHits   number of descriptors reused
+   * @param numMisses number of descriptors labelled in the digraph
+   * @see AuxDescriptorCache
+   */
+  void countAuxCache(int numHits, int numMisses);
+
+  /**
+   * The digraph of a configuration that has been labelled.
+   *
+   * @param digraph the digraph
+   */
+  <A, B> void measureDigraph(Digraph<A, B> digraph);
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.simolecule.centres;
+
+import com.simolecule.centres.config.Configuration;
+import com.simolecule.centres.config.Octahedral;
+import com.simolecule.centres.config.SquarePlanar;
+import com.simolecule.centres.config.TrigonalBipyramidal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Record of how the configurations of a molecule were labelled, allowing
+ * the molecule to be relabelled incrementally after a local edit
+ * ({@link Labeller#relabel}). For each configuration the descriptor and the
+ * atoms of the digraph that were reached (the part of the molecule that
+ * decided the descriptor) are kept. A configuration only needs labelling
+ * again if one of the atoms it reached has changed.
+ *
+ * Configurations are matched between edits on their type and focus atoms,
+ * so the atom objects must be preserved by the edit. The record is
+ * thread-safe, configurations may be recorded in parallel.
+ */
+public final class LabellingRecord<A, B> {
+
+  private static final class Entry<A, B> {
+    // the configuration that set the label, to clear it if removed
+    private final Configuration<A, B> conf;
+    private final Descriptor          desc;
+    // null if the configuration must always be labelled again
+    private final Set<A>              reach;
+
+    private Entry(Configuration<A, B> conf, Descriptor desc, Set<A> reach)
+    {
+      this.conf = conf;
+      this.desc = desc;
+      this.reach = reach;
+    }
+
+    private boolean isReusable()
+    {
+      return reach != null;
+    }
+  }
+
+  private final Map<List<Object>, Entry<A, B>> entries = new ConcurrentHashMap<>();
+  // fractional atomic numbers (den > 1) of the last labelling, these depend
+  // on the whole conjugated system rather than just the atoms reached
+  private Map<A, Long> fractions = Collections.emptyMap();
+
+  private volatile int numReused, numLabelled;
+
+  private static List<Object> key(Configuration<?, ?> conf)
+  {
+    List<Object> key = new ArrayList<>(1 + conf.getFoci().length);
+    key.add(conf.getClass());
+    key.addAll(Arrays.asList(conf.getFoci()));
+    return key;
+  }
+
+  /**
+   * Configurations that set more than their label must always be labelled.
+   */
+  private static boolean isReusable(Configuration<?, ?> conf)
+  {
+    return !(conf instanceof Octahedral ||
+             conf instanceof SquarePlanar ||
+             conf instanceof TrigonalBipyramidal);
+  }
+
+  /**
+   * Record the labelling of a configuration.
+   *
+   * @param conf    the configuration
+   * @param desc    the descriptor assigned (may be null)
+   * @param digraph the digraph the configuration was labelled with
+   */
+  void put(Configuration<A, B> conf, Descriptor desc, Digraph<A, B> digraph)
+  {
+    // budget is not reproducible (e.g. time), always label again
+    if (desc == Descriptor.BudgetExceeded || !isReusable(conf)) {
+      entries.put(key(conf), new Entry<>(conf, desc, null));
+      return;
+    }
+    entries.put(key(conf), new Entry<>(conf, desc, reach(conf, digraph)));
+  }
+
+  /**
+   * Record the labelling of a configuration that was labelled without a
+   * digraph.
+   *
+   * @param conf  the configuration
+   * @param desc  the descriptor assigned
+   * @param reach the atoms that decided the descriptor
+   */
+  void put(Configuration<A, B> conf, Descriptor desc, Set<A> reach)
+  {
+    entries.put(key(conf), new Entry<>(conf, desc, isReusable(conf) ? reach : null));
+  }
+
+  /**
+   * The atoms of the nodes created in the digraph, only expanded nodes are
+   * visited.
+   */
+  private static <A, B> Set<A> reach(Configuration<A, B> conf, Digraph<A, B> digraph)
+  {
+    Set<A> reach = new HashSet<>();
+    reach.addAll(Arrays.asList(conf.getFoci()));
+    Node<A, B> root = digraph.getRoot() != null ? digraph.getCurrRoot() : null;
+    if (root == null)
+      return reach;
+    Deque<Node<A, B>> queue = new ArrayDeque<>();
+    queue.add(root);
+    while (!queue.isEmpty()) {
+      Node<A, B> node = queue.poll();
+      if (node.getAtom() != null)
+        reach.add(node.getAtom());
+      if (!node.isExpanded())
+        continue;
+      for (Edge<A, B> edge : node.getEdges()) {
+        if (edge.isBeg(node))
+          queue.add(edge.getEnd());
+      }
+    }
+    return reach;
+  }
+
+  private static <A, B> Map<A, Long> fractions(BaseMol<A, B> mol)
+  {
+    Map<A, Long> fractions = new HashMap<>();
+    for (int i = 0; i < mol.getNumAtoms(); i++) {
+      int den = mol.getAtomicNumDenominator(i);
+      if (den > 1)
+        fractions.put(mol.getAtom(i), ((long) mol.getAtomicNumNumerator(i) << 32) | den);
+    }
+    return fractions;
+  }
+
+  /**
+   * Determine the configurations that must be labelled again after the
+   * specified atoms were changed, configurations that can be reused have
+   * their previous descriptor set. Atoms whose fractional atomic number has
+   * changed are added to the changed atoms. Configurations that are no
+   * longer present have their label removed.
+   *
+   * @param mol          the molecule
+   * @param configs      the configurations of the molecule
+   * @param changedAtoms the changed atoms
+   * @return the configurations to label
+   */
+  List<Configuration<A, B>> reuse(BaseMol<A, B> mol,
+                                  List<Configuration<A, B>> configs,
+                                  Collection<A> changedAtoms)
+  {
+    Set<A> changed = new HashSet<>(changedAtoms);
+    Map<A, Long> prevFractions = fractions;
+    fractions = fractions(mol);
+    for (Map.Entry<A, Long> e : fractions.entrySet()) {
+      if (!e.getValue().equals(prevFractions.get(e.getKey())))
+        changed.add(e.getKey());
+    }
+    for (A atom : prevFractions.keySet()) {
+      if (!fractions.containsKey(atom))
+        changed.add(atom);
+    }
+
+    Set<List<Object>> keys = new HashSet<>();
+    for (Configuration<A, B> conf : configs)
+      keys.add(key(conf));
+    // configurations no longer present, cleared first as the atom or bond
+    // may carry the label of another configuration
+    Iterator<Map.Entry<List<Object>, Entry<A, B>>> iter = entries.entrySet().iterator();
+    while (iter.hasNext()) {
+      Map.Entry<List<Object>, Entry<A, B>> e = iter.next();
+      if (!keys.contains(e.getKey())) {
+        e.getValue().conf.clearPrimaryLabel(mol);
+        iter.remove();
+      }
+    }
+
+    List<Configuration<A, B>> relabel = new ArrayList<>();
+    for (Configuration<A, B> conf : configs) {
+      List<Object> key   = key(conf);
+      Entry<A, B>  entry = entries.get(key);
+      if (entry == null || !entry.isReusable() || !Collections.disjoint(entry.reach, changed)) {
+        relabel.add(conf);
+      } else {
+        if (entry.desc != null)
+          conf.setPrimaryLabel(mol, entry.desc);
+        else
+          conf.clearPrimaryLabel(mol);
+        // hold the current configuration, not the one from the last edit
+        entries.put(key, new Entry<>(conf, entry.desc, entry.reach));
+      }
+    }
+
+    numReused = configs.size() - relabel.size();
+    numLabelled = relabel.size();
+    return relabel;
+  }
+
+  /**
+   * Number of configurations whose previous descriptor was reused by the
+   * last relabelling.
+   *
+   * @return number reused
+   */
+  public int getNumReused()
+  {
+    return numReused;
+  }
+
+  /**
+   * Number of configurations labelled by the last relabelling.
+   *
+   * @return number labelled
+   */
+  public int getNumLabelled()
+  {
+    return numLabelled;
+  }
+
+  /**
+   * Forget all the recorded labels, the next relabelling will label every
+   * configuration.
+   */
+  public void clear()
+  {
+    entries.clear();
+    fractions = Collections.emptyMap();
+  }
+}
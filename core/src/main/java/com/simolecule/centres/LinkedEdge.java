@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.simolecule.centres;
+
+/**
+ * An edge that references its end points directly.
+ *
+ * @see Digraph.Storage#Linked
+ */
+final class LinkedEdge<A, B> extends Edge<A, B> {
+
+  private Node<A, B> beg, end;
+  private final B bond;
+  private Descriptor aux;
+
+  LinkedEdge(Node<A, B> beg, Node<A, B> end, B bond)
+  {
+    this.beg = beg;
+    this.end = end;
+    this.bond = bond;
+  }
+
+  @Override
+  public Node<A, B> getBeg()
+  {
+    return beg;
+  }
+
+  @Override
+  public Node<A, B> getEnd()
+  {
+    return end;
+  }
+
+  @Override
+  public Descriptor getAux()
+  {
+    return aux;
+  }
+
+  @Override
+  public void setAux(Descriptor aux)
+  {
+    this.aux = aux;
+    beg.getDigraph().invalidate();
+  }
+
+  @Override
+  public void flip()
+  {
+    Node<A, B> tmp = end;
+    end = beg;
+    beg = tmp;
+  }
+
+  @Override
+  public B getBond()
+  {
+    return bond;
+  }
+}
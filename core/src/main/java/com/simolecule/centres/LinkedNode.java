@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.simolecule.centres;
+
+import com.simolecule.centres.rules.Sort;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A digraph node that holds its data and edges directly. How a node records
+ * the atoms visited on the path from the root depends on the
+ * {@link Digraph.Ancestry} of the digraph.
+ *
+ * @see Digraph.Storage#Linked
+ */
+final class LinkedNode<A, B> extends Node<A, B> {
+
+  private final Digraph<A, B>    g;
+  private final LinkedNode<A, B> parent;
+  private final int              idx;
+  private final A                atom;
+  private final int              dist;
+  private final short            atomicnumRank;
+  private       Edge<A, B>       parentEdge;
+  private       Descriptor       aux;
+  private       Sort.Memo        sortMemo;
+  private int flags;
+
+  // ancestry, only one (or neither) is set for non-terminal nodes
+  private final char[]           visit;
+  private final long[]           path;
+  private final List<Edge<A, B>> edges;
+
+  LinkedNode(Digraph<A, B> g,
+             LinkedNode<A, B> parent,
+             int idx,
+             A atom,
+             int rank,
+             int dist,
+             int flags)
+  {
+    this.g = g;
+    this.parent = parent;
+    this.idx = idx;
+    this.atom = atom;
+    this.dist = dist;
+    this.flags = flags;
+    this.atomicnumRank = (short) rank;
+    this.edges = (flags & DUPLICATE) != 0
+            ? new ArrayList<Edge<A, B>>()
+            : new ArrayList<Edge<A, B>>(4);
+    if ((flags & TERMINAL) != 0) {
+      this.flags |= EXPANDED;
+      this.visit = null;
+      this.path = null;
+    } else {
+      switch (g.getAncestry()) {
+        case VisitArray:
+          this.visit = parent != null ? parent.visit.clone() : new char[g.getMol().getNumAtoms()];
+          this.visit[idx] = (char) dist;
+          this.path = null;
+          break;
+        case PathBitSet:
+          this.visit = null;
+          this.path = parent != null ? parent.path.clone() : new long[(g.getMol().getNumAtoms() + 63) >>> 6];
+          this.path[idx >>> 6] |= 1L << idx;
+          break;
+        default:
+          this.visit = null;
+          this.path = null;
+          break;
+      }
+    }
+  }
+
+  @Override
+  public Digraph<A,B> getDigraph() {
+    return g;
+  }
+
+  @Override
+  void newChild(int idx, A atom, B bond)
+  {
+    LinkedNode<A, B> end = new LinkedNode<>(g, this, idx, atom, g.getMol().getAtomNums().getRank(g.getMol().getAtomicNum(atom)), dist + 1, 0);
+    addEdge(bond, end);
+  }
+
+  @Override
+  void newTerminalChild(int idx, A atom, B bond, int rank, int dist, int flags)
+  {
+    LinkedNode<A, B> end = new LinkedNode<>(g, this, idx, atom, rank, dist, flags);
+    addEdge(bond, end);
+  }
+
+  private void addEdge(B bond, LinkedNode<A, B> end)
+  {
+    Edge<A, B> e = new LinkedEdge<>(this, end, bond);
+    this.edges.add(e);
+    end.edges.add(e);
+    end.parentEdge = e;
+  }
+
+  @Override
+  int getVisitDistance(int idx)
+  {
+    if (visit != null)
+      return visit[idx];
+    if (path != null && (path[idx >>> 6] & (1L << idx)) == 0)
+      return 0;
+    for (LinkedNode<A, B> node = this; node != null; node = node.parent) {
+      if (node.idx == idx)
+        return node.dist;
+    }
+    return 0;
+  }
+
+  @Override
+  B getPrevBond()
+  {
+    return parentEdge != null ? parentEdge.getBond() : null;
+  }
+
+  @Override
+  public int getDistance()
+  {
+    return dist;
+  }
+
+  @Override
+  public A getAtom()
+  {
+    return atom;
+  }
+
+  @Override
+  int getAtomIdx() {
+    return idx;
+  }
+
+  @Override
+  Node<A, B> getParent()
+  {
+    return parent;
+  }
+
+  @Override
+  void flipParentEdge()
+  {
+    parentEdge.flip();
+  }
+
+  @Override
+  public int getAtomicNumRank() {
+    return atomicnumRank;
+  }
+
+  @Override
+  public Descriptor getAux()
+  {
+    return aux;
+  }
+
+  @Override
+  public void setAux(Descriptor desc)
+  {
+    this.aux = desc;
+    g.invalidate();
+  }
+
+  @Override
+  public Sort.Memo getSortMemo()
+  {
+    return sortMemo;
+  }
+
+  @Override
+  public void setSortMemo(Sort.Memo sortMemo)
+  {
+    this.sortMemo = sortMemo;
+  }
+
+  @Override
+  public List<Edge<A, B>> getEdges()
+  {
+    if ((flags & EXPANDED) == 0) {
+      flags |= EXPANDED;
+      g.expand(this);
+    }
+    return edges;
+  }
+
+  @Override
+  public boolean isSet(int mask)
+  {
+    return (mask & flags) != 0;
+  }
+
+  @Override
+  public boolean isTerminal()
+  {
+    return (flags & TERMINAL) != 0 || ((flags & EXPANDED) != 0 && edges.size() == 1);
+  }
+}
@@ -26,12 +26,26 @@
 
 package com.simolecule.centres;
 
-
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.Arrays;
+import java.util.Comparator;
 
 public final class Mancude {
 
+  // atom types, see SeedTypes
+  private static final byte OTHER       = 0;
+  private static final byte CV4D4       = 1; // =CH-
+  private static final byte NV3D2       = 2; // =N-
+  private static final byte NV4D3_PLUS  = 3; // =[N+]<
+  private static final byte NV2D2_MINUS = 4; // -[N-]-
+  private static final byte CV3D3_MINUS = 5; // -[CH-]-
+  private static final byte OV3D2_PLUS  = 6; // -[O+]=
+
+  /**
+   * Atom types of the mancude ring systems.
+   *
+   * @deprecated the types are internal to {@link #calcAtomNums(BaseMol)}
+   */
+  @Deprecated
   public enum Type {
     Cv4D4, // =CH-
     Nv3D2, // =N-
@@ -42,18 +56,147 @@ public final class Mancude {
     Other
   }
 
-  public static <A, B> boolean SeedTypes(Type[] types, BaseMol<A, B> mol)
+  /**
+   * The fractional atomic numbers of each atom in a molecule, as parallel
+   * numerator and denominator arrays. Instances are immutable and so may be
+   * shared between threads.
+   *
+   * A rank table orders the distinct values digraph nodes may take, the
+   * integers 0..255 and the fractions (den &gt; 1) of the atoms, so nodes
+   * can be compared on a single integer. Equal values have the same rank and
+   * only a value of 0 has rank 0.
+   */
+  public static final class AtomNums {
+
+    private static final int NUM_INTS = 256;
+
+    final int[] num;
+    final int[] den;
+
+    private final short[] intRank;
+    private final short[] fracRank;
+    private final int[]   rankNum;
+    private final int[]   rankDen;
+
+    private AtomNums(int[] num, int[] den)
+    {
+      this.num = num;
+      this.den = den;
+
+      int numFracs = 0;
+      for (int d : den) {
+        if (d > 1)
+          numFracs++;
+      }
+      final int[] vnum  = new int[NUM_INTS + numFracs];
+      final int[] vden  = new int[NUM_INTS + numFracs];
+      int[]       atoms = new int[numFracs];
+      for (int i = 0; i < NUM_INTS; i++) {
+        vnum[i] = i;
+        vden[i] = 1;
+      }
+      for (int i = 0, j = NUM_INTS; i < den.length; i++) {
+        if (den[i] > 1) {
+          atoms[j - NUM_INTS] = i;
+          vnum[j] = num[i];
+          vden[j] = den[i];
+          j++;
+        }
+      }
+
+      Integer[] order = new Integer[vnum.length];
+      for (int i = 0; i < order.length; i++)
+        order[i] = i;
+      if (numFracs != 0) {
+        Arrays.sort(order, new Comparator<Integer>() {
+          @Override
+          public int compare(Integer a, Integer b)
+          {
+            return Fraction.compare(vnum[a], vden[a], vnum[b], vden[b]);
+          }
+        });
+      }
+
+      intRank = new short[NUM_INTS];
+      fracRank = new short[den.length];
+      Arrays.fill(fracRank, (short) -1);
+      int[] rnum = new int[order.length];
+      int[] rden = new int[order.length];
+      int   rank = -1;
+      for (int i = 0; i < order.length; i++) {
+        int v = order[i];
+        if (i == 0 || Fraction.compare(vnum[order[i - 1]], vden[order[i - 1]], vnum[v], vden[v]) != 0) {
+          rank++;
+          rnum[rank] = vnum[v];
+          rden[rank] = vden[v];
+        }
+        if (v < NUM_INTS)
+          intRank[v] = (short) rank;
+        else
+          fracRank[atoms[v - NUM_INTS]] = (short) rank;
+      }
+      rankNum = Arrays.copyOf(rnum, rank + 1);
+      rankDen = Arrays.copyOf(rden, rank + 1);
+    }
+
+    public int getNum(int atomIdx)
+    {
+      return num[atomIdx];
+    }
+
+    public int getDen(int atomIdx)
+    {
+      return den[atomIdx];
+    }
+
+    /**
+     * The rank of an integer atomic number.
+     *
+     * @param atomicNum the atomic number
+     * @return the rank
+     */
+    public int getRank(int atomicNum)
+    {
+      if (atomicNum < 0 || atomicNum >= NUM_INTS)
+        throw new IllegalArgumentException("Atomic number out of range: " + atomicNum);
+      return intRank[atomicNum];
+    }
+
+    /**
+     * The rank of the fractional atomic number of an atom.
+     *
+     * @param atomIdx the atom index
+     * @return the rank, -1 if the atom's denominator is not &gt; 1
+     */
+    public int getFracRank(int atomIdx)
+    {
+      return fracRank[atomIdx];
+    }
+
+    public int getRankNum(int rank)
+    {
+      return rankNum[rank];
+    }
+
+    public int getRankDen(int rank)
+    {
+      return rankDen[rank];
+    }
+  }
+
+  private static <A, B> boolean seedTypes(byte[] types, BaseMol<A, B> mol)
   {
     boolean result = false;
-    for (A atom : mol.atoms()) {
-      final int aidx = mol.getAtomIdx(atom);
-      types[aidx] = Type.Other;
+    for (int aidx = 0; aidx < types.length; aidx++) {
+      final A atom = mol.getAtom(aidx);
+      types[aidx] = OTHER;
 
       // check ring
       int     btypes = mol.getNumHydrogens(atom);
       boolean ring   = false;
-      for (B bond : mol.getBonds(atom)) {
-        switch (mol.getBondOrder(bond)) {
+      int     deg    = mol.getDegree(aidx);
+      for (int k = 0; k < deg; k++) {
+        switch (mol.getBondOrder(aidx, k)) {
           case 1:
             btypes += 0x00000001;
             break;
@@ -67,7 +210,7 @@ public final class Mancude {
             btypes += 0x01000000;
             break;
         }
-        if (mol.isInRing(bond))
+        if (mol.isInRing(mol.getNbrBond(aidx, k)))
           ring = true;
       }
       if (ring) {
@@ -77,9 +220,9 @@ public final class Mancude {
           case 14: // Si
           case 32: // Ge
             if (q == 0 && btypes == 0x0102)
-              types[aidx] = Type.Cv4D4;
+              types[aidx] = CV4D4;
             else if (q == -1 && btypes == 0x0003) {
-              types[aidx] = Type.Cv3D3Minus;
+              types[aidx] = CV3D3_MINUS;
               result = true;
             }
             break;
@@ -87,19 +230,19 @@ public final class Mancude {
           case 15: // P
           case 33: // As
             if (q == 0 && btypes == 0x0101) {
-              types[aidx] = Type.Nv3D2;
+              types[aidx] = NV3D2;
               result = true;
             } else if (q == -1 && btypes == 0x0002) {
-              types[aidx] = Type.Nv2D2Minus;
+              types[aidx] = NV2D2_MINUS;
               result = true;
             } else if (q == 1 && btypes == 0x0102) {
-              types[aidx] = Type.Nv4D3Plus;
+              types[aidx] = NV4D3_PLUS;
               result = true;
             }
             break;
           case 8: // O
             if (q == 1 && btypes == 0x0101) {
-              types[aidx] = Type.Ov3D2Plus;
+              types[aidx] = OV3D2_PLUS;
               result = true;
             }
             break;
@@ -109,145 +252,242 @@ public final class Mancude {
     return result;
   }
 
-  public static <A, B> void RelaxTypes(Type[] types, BaseMol<A, B> mol)
+  private static <A, B> void relaxTypes(byte[] types, BaseMol<A, B> mol)
   {
-    int[]    counts = new int[mol.getNumAtoms()];
-    Deque<A> queue  = new ArrayDeque<>();
-    for (A atom : mol.atoms()) {
-      int aidx = mol.getAtomIdx(atom);
-      for (B bond : mol.getBonds(atom)) {
-        A nbr = mol.getOther(bond, atom);
-        if (types[mol.getAtomIdx(nbr)] != Type.Other)
+    final int numAtoms = types.length;
+    int[] counts = new int[numAtoms];
+    // an atom is only queued once, when its count first reaches 1
+    int[] queue  = new int[numAtoms];
+    int   head   = 0, tail = 0;
+    for (int aidx = 0; aidx < numAtoms; aidx++) {
+      int deg = mol.getDegree(aidx);
+      for (int k = 0; k < deg; k++) {
+        if (types[mol.getNbr(aidx, k)] != OTHER)
           counts[aidx]++;
       }
       if (counts[aidx] == 1)
-        queue.add(atom);
+        queue[tail++] = aidx;
     }
-    while (!queue.isEmpty()) {
-      A   atom = queue.poll();
-      int aidx = mol.getAtomIdx(atom);
-      if (types[aidx] != Type.Other) {
-        types[aidx] = Type.Other;
-        for (B bond : mol.getBonds(atom)) {
-          A   nbr    = mol.getOther(bond, atom);
-          int nbridx = mol.getAtomIdx(nbr);
+    while (head < tail) {
+      int aidx = queue[head++];
+      if (types[aidx] != OTHER) {
+        types[aidx] = OTHER;
+        int deg = mol.getDegree(aidx);
+        for (int k = 0; k < deg; k++) {
+          int nbridx = mol.getNbr(aidx, k);
           if (--counts[nbridx] == 1) {
-            queue.add(nbr);
+            queue[tail++] = nbridx;
           }
         }
       }
     }
   }
 
-  private static <A, B> void VisitPart(int[] parts, Type[] types, int part, A atom, BaseMol<A, B> mol)
+  /**
+   * Flood the parts (typed atoms connected by ring bonds) with an explicit
+   * stack, long conjugated systems would overflow a recursive visit.
+   */
+  private static <A, B> int visitParts(int[] parts, byte[] types, BaseMol<A, B> mol)
   {
-    A next;
-    do {
-      next = null;
-      for (B bond : mol.getBonds(atom)) {
-        if (!mol.isInRing(bond))
-          continue;
-        A   nbr  = mol.getOther(bond, atom);
-        int aidx = mol.getAtomIdx(nbr);
-        if (parts[aidx] == 0 && types[aidx] != Type.Other) {
-          parts[aidx] = part;
-          if (next != null)
-            VisitPart(parts, types, part, nbr, mol);
-          else
-            next = nbr;
+    int   numparts = 0;
+    int[] stack    = new int[types.length];
+    for (int beg = 0; beg < types.length; beg++) {
+      if (parts[beg] != 0 || types[beg] == OTHER)
+        continue;
+      int part = ++numparts;
+      int size = 0;
+      parts[beg] = part;
+      stack[size++] = beg;
+      while (size > 0) {
+        int aidx = stack[--size];
+        int deg  = mol.getDegree(aidx);
+        for (int k = 0; k < deg; k++) {
+          if (!mol.isInRing(mol.getNbrBond(aidx, k)))
+            continue;
+          int nbr = mol.getNbr(aidx, k);
+          if (parts[nbr] == 0 && types[nbr] != OTHER) {
+            parts[nbr] = part;
+            stack[size++] = nbr;
+          }
         }
       }
-      atom = next;
-    } while (atom != null);
+    }
+    return numparts;
   }
 
-  public static <A, B> int VisitParts(int[] parts, Type[] types, BaseMol<A, B> mol)
+  @SuppressWarnings("deprecation")
+  private static Type toType(byte type)
   {
-    int numparts = 0;
-    for (A atom : mol.atoms()) {
-      int aidx = mol.getAtomIdx(atom);
-      if (parts[aidx] == 0 && types[aidx] != Type.Other) {
-        parts[aidx] = ++numparts;
-        VisitPart(parts, types, parts[aidx], atom, mol);
-      }
-    }
-    return numparts;
+    return type == OTHER ? Type.Other : Type.values()[type - 1];
   }
 
-  public static <A, B> Fraction[] CalcFracAtomNums(BaseMol<A, B> mol)
+  @SuppressWarnings("deprecation")
+  private static byte toByte(Type type)
   {
-    Fraction[] fractions = new Fraction[mol.getNumAtoms()];
+    return type == Type.Other ? OTHER : (byte) (type.ordinal() + 1);
+  }
 
-    for (int i = 0; i < mol.getNumAtoms(); i++)
-      fractions[i] = new Fraction(mol.getAtomicNum(mol.getAtom(i)), 1);
+  @SuppressWarnings("deprecation")
+  private static byte[] toBytes(Type[] types)
+  {
+    byte[] bytes = new byte[types.length];
+    for (int i = 0; i < types.length; i++)
+      bytes[i] = toByte(types[i]);
+    return bytes;
+  }
 
-    Type[] types = new Type[mol.getNumAtoms()];
-    if (Mancude.SeedTypes(types, mol)) {
-      Mancude.RelaxTypes(types, mol);
+  /**
+   * Assign the initial types of each atom.
+   *
+   * @param types the types (output)
+   * @param mol   the molecule
+   * @return whether an atom may be in a mancude ring system
+   * @deprecated use {@link #calcAtomNums(BaseMol)}
+   */
+  @Deprecated
+  public static <A, B> boolean SeedTypes(Type[] types, BaseMol<A, B> mol)
+  {
+    byte[]  bytes  = new byte[mol.getNumAtoms()];
+    boolean result = seedTypes(bytes, mol);
+    for (int i = 0; i < bytes.length; i++)
+      types[i] = toType(bytes[i]);
+    return result;
+  }
 
-      int[] parts    = new int[mol.getNumAtoms()];
-      int   numparts = Mancude.VisitParts(parts, types, mol);
+  /**
+   * Remove the types of atoms with less than two typed neighbours.
+   *
+   * @param types the types
+   * @param mol   the molecule
+   * @deprecated use {@link #calcAtomNums(BaseMol)}
+   */
+  @Deprecated
+  public static <A, B> void RelaxTypes(Type[] types, BaseMol<A, B> mol)
+  {
+    byte[] bytes = toBytes(types);
+    relaxTypes(bytes, mol);
+    for (int i = 0; i < bytes.length; i++)
+      types[i] = toType(bytes[i]);
+  }
 
-      int[] resparts = new int[numparts];
-      int   numres   = 0;
+  /**
+   * Number the parts (typed atoms connected by ring bonds) of a molecule.
+   *
+   * @param parts the part of each atom, 0 if none (output)
+   * @param types the types
+   * @param mol   the molecule
+   * @return the number of parts
+   * @deprecated use {@link #calcAtomNums(BaseMol)}
+   */
+  @Deprecated
+  public static <A, B> int VisitParts(int[] parts, Type[] types, BaseMol<A, B> mol)
+  {
+    return visitParts(parts, toBytes(types), mol);
+  }
 
-      if (numparts > 0) {
-        for (int i = 0; i < mol.getNumAtoms(); i++) {
-          if (parts[i] == 0)
-            continue;
-          A atom = mol.getAtom(i);
-
-          if (types[i] == Type.Cv3D3Minus ||
-              types[i] == Type.Nv2D2Minus) {
-            int j = 0;
-            for (; j < numres; j++)
-              if (resparts[j] == parts[i])
-                break;
-            if (j >= numres)
-              resparts[numres++] = parts[i];
-          }
+  /**
+   * Calculate the fractional atomic numbers of a molecule, the atomic number
+   * of an atom in a mancude ring system is the average of its neighbours in
+   * the system (Rule 1a, P-92.1.4.4). Atoms outside these systems have their
+   * atomic number (over 1).
+   *
+   * @param mol the molecule
+   * @return the atomic numbers
+   */
+  public static <A, B> AtomNums calcAtomNums(BaseMol<A, B> mol)
+  {
+    final int numAtoms = mol.getNumAtoms();
+    int[]     num      = new int[numAtoms];
+    int[]     den      = new int[numAtoms];
 
-          fractions[i].num = 0;
-          fractions[i].den = 0;
-          for (B bond : mol.getBonds(atom)) {
-            A nbr = mol.getOther(bond, atom);
-            if (parts[mol.getAtomIdx(nbr)] == parts[i]) {
-              fractions[i].num += mol.getAtomicNum(nbr);
-              fractions[i].den++;
-            }
-          }
+    for (int i = 0; i < numAtoms; i++) {
+      num[i] = mol.getAtomicNum(mol.getAtom(i));
+      den[i] = 1;
+    }
+
+    byte[] types = new byte[numAtoms];
+    if (!seedTypes(types, mol))
+      return new AtomNums(num, den);
+    relaxTypes(types, mol);
+
+    int[] parts    = new int[numAtoms];
+    int   numparts = visitParts(parts, types, mol);
+    if (numparts == 0)
+      return new AtomNums(num, den);
+
+    // parts with a delocalised charge share one value over all their atoms
+    boolean[] resonance = new boolean[numparts + 1];
+    for (int i = 0; i < numAtoms; i++) {
+      if (parts[i] == 0)
+        continue;
+      if (types[i] == CV3D3_MINUS || types[i] == NV2D2_MINUS)
+        resonance[parts[i]] = true;
+      num[i] = 0;
+      den[i] = 0;
+      int deg = mol.getDegree(i);
+      for (int k = 0; k < deg; k++) {
+        int nbr = mol.getNbr(i, k);
+        if (parts[nbr] == parts[i]) {
+          num[i] += num(mol, nbr);
+          den[i]++;
         }
       }
+    }
 
-      if (numres > 0) {
-        for (int j = 0; j < numres; j++) {
-          Fraction frac = new Fraction(0, 0);
-          int part = resparts[j];
-          for (int i = 0; i < mol.getNumAtoms(); i++) {
-            if (parts[i] == part) {
-              fractions[i] = frac;
-              frac.den++;
-              A atom = mol.getAtom(i);
-              for (B bond : mol.getBonds(atom)) {
-                A   nbr  = mol.getOther(bond, atom);
-                int bord = mol.getBondOrder(bond);
-                if (bord > 1 &&
-                    parts[mol.getAtomIdx(nbr)] == part) {
-                  frac.num += (bord - 1) * mol.getAtomicNum(nbr);
-                }
-              }
-            }
-          }
+    int[] resNum = null;
+    int[] resDen = null;
+    for (int i = 0; i < numAtoms; i++) {
+      int part = parts[i];
+      if (part == 0 || !resonance[part])
+        continue;
+      if (resNum == null) {
+        resNum = new int[numparts + 1];
+        resDen = new int[numparts + 1];
+      }
+      resDen[part]++;
+      int deg = mol.getDegree(i);
+      for (int k = 0; k < deg; k++) {
+        int bord = mol.getBondOrder(i, k);
+        if (bord > 1 && parts[mol.getNbr(i, k)] == part)
+          resNum[part] += (bord - 1) * num(mol, mol.getNbr(i, k));
+      }
+    }
+    if (resNum != null) {
+      for (int i = 0; i < numAtoms; i++) {
+        if (parts[i] != 0 && resonance[parts[i]]) {
+          num[i] = resNum[parts[i]];
+          den[i] = resDen[parts[i]];
         }
       }
     }
 
+    return new AtomNums(num, den);
+  }
+
+  private static <A, B> int num(BaseMol<A, B> mol, int atomIdx)
+  {
+    return mol.getAtomicNum(mol.getAtom(atomIdx));
+  }
+
+  /**
+   * Calculate the fractional atomic numbers of a molecule as objects.
+   *
+   * @param mol the molecule
+   * @return the atomic numbers
+   * @see #calcAtomNums(BaseMol)
+   */
+  public static <A, B> Fraction[] CalcFracAtomNums(BaseMol<A, B> mol)
+  {
+    AtomNums   atomNums  = calcAtomNums(mol);
+    Fraction[] fractions = new Fraction[atomNums.num.length];
+    for (int i = 0; i < fractions.length; i++)
+      fractions[i] = new Fraction(atomNums.num[i], atomNums.den[i]);
     return fractions;
   }
 
   public static class Fraction implements Comparable<Fraction> {
-    private int num;
-    private int den;
+    private final int num;
+    private final int den;
 
     public Fraction(int num, int den)
     {
@@ -269,6 +509,9 @@ public final class Mancude {
 
     public static int compare(int anum, int aden, int bnum, int bden)
     {
+      // exact, a/b < c/d iff a*d < c*b for positive denominators
+      if (aden > 0 && bden > 0)
+        return Long.compare((long) anum * bden, (long) bnum * aden);
       return Double.compare(anum / (double) aden, bnum / (double) bden);
     }
 
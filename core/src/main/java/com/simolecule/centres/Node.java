@@ -24,12 +24,23 @@
  * POSSIBILITY OF SUCH DAMAGE.
  */
 
+
 package com.simolecule.centres;
 
+import com.simolecule.centres.rules.Sort;
+
 import java.util.ArrayList;
 import java.util.List;
 
-public final class Node<A, B> {
+/**
+ * A node in the hierarchical digraph. The node data may be held directly
+ * ({@link LinkedNode}) or in the columns of a {@link CompactStore}
+ * ({@link CompactNode}) depending on the {@link Digraph.Storage} selected.
+ *
+ * @param <A> atom type
+ * @param <B> bond type
+ */
+public abstract class Node<A, B> {
 
   /**
    * Flag indicates whether the node has been expanded.
@@ -59,115 +70,137 @@ public final class Node<A, B> {
    */
   public static final int IMPL_HYDROGEN = 0x8;
 
+  /**
+   * Mask of the flags for nodes that are terminal when created.
+   */
+  static final int TERMINAL = DUPLICATE | IMPL_HYDROGEN;
 
-  private final Digraph<A, B> g;
-  private final A             atom;
-  private final int           dist;
-  private final short         atomicnumNum;
-  private final short         atomicnumDen;
-  private       Descriptor    aux;
-  private int flags;
+  Node()
+  {
+  }
 
+  /**
+   * Access the memo of how the edges of this node were last prioritised,
+   * see {@link Sort#prioritise(Node, List, boolean)}.
+   *
+   * @return the memo, null if the edges have not been prioritised
+   */
+  public abstract Sort.Memo getSortMemo();
 
-  final         char[]           visit;
-  private final List<Edge<A, B>> edges;
+  public abstract void setSortMemo(Sort.Memo sortMemo);
 
-  public Node(Digraph<A, B> g,
-              char[] visit,
-              A atom,
-              int anum,
-              int aden,
-              int dist,
-              int flags)
-  {
-    this.g = g;
-    this.visit = visit;
-    this.atom = atom;
-    this.dist = dist;
-    this.flags = flags;
-    this.atomicnumNum = (short) anum;
-    this.atomicnumDen = (short) aden;
-    this.edges = (flags & DUPLICATE) != 0
-            ? new ArrayList<Edge<A, B>>()
-            : new ArrayList<Edge<A, B>>(4);
-    if (visit == null || (flags & DUPLICATE) != 0)
-      this.flags |= EXPANDED;
-  }
+  public abstract Digraph<A, B> getDigraph();
 
-  public Digraph<A,B> getDigraph() {
-    return g;
-  }
+  /**
+   * Create a new (non-terminal) child of this node for the atom at the
+   * provided index, the edge to the child is also added.
+   *
+   * @param idx  atom index
+   * @param atom the atom
+   * @param bond the bond to the child
+   */
+  abstract void newChild(int idx, A atom, B bond);
 
-  Node<A, B> newChild(int idx, A atom)
-  {
-    final char[] visit = this.visit.clone();
-    visit[idx] = (char) (dist + 1);
-    return new Node<>(g, visit, atom, g.getMol().getAtomicNum(atom), 1, dist + 1, 0);
-  }
+  /**
+   * Create a new terminal child of this node, the node has the provided
+   * atomic number rank and distance and is marked as expanded.
+   *
+   * @see Mancude.AtomNums
+   */
+  abstract void newTerminalChild(int idx, A atom, B bond, int rank, int dist, int flags);
+
+  /**
+   * Access the distance of the node on the path from the root to this node
+   * which has the provided atom index, if the atom has not been visited on
+   * the path 0 is returned.
+   *
+   * @param idx atom index
+   * @return distance of the visit, 0 if not visited
+   */
+  abstract int getVisitDistance(int idx);
 
-  Node<A, B> newTerminalChild(int idx, A atom, int flags)
+  /**
+   * Access the bond we arrived at this node from, if this is the root
+   * null is returned. The bond is the one the node was built from, even if
+   * the edge has since been flipped by re-rooting the digraph.
+   *
+   * @return the previous bond
+   */
+  abstract B getPrevBond();
+
+  void newTerminalChild(int idx, A atom, B bond, int flags)
   {
     int dist = (char) (((flags & DUPLICATE) != 0
-            ? visit[idx]
-            : this.dist + 1));
-    int anum;
-    int aden;
-    if ((flags & BOND_DUPLICATE) != 0) {
-      Mancude.Fraction frac = g.getMol().getFractionalAtomicNum(this.atom);
-      if (frac.getDen() > 1) {
-        anum = frac.getNum();
-        aden = frac.getDen();
-      } else {
-        anum = g.getMol().getAtomicNum(atom);
-        aden = 1;
-      }
-    } else {
-      anum = g.getMol().getAtomicNum(atom);
-      aden = 1;
-    }
-    return new Node<>(g, null, atom, anum, aden, dist, flags);
+            ? getVisitDistance(idx)
+            : getDistance() + 1));
+    BaseMol<A, B>    mol  = getDigraph().getMol();
+    Mancude.AtomNums nums = mol.getAtomNums();
+    int rank;
+    if ((flags & BOND_DUPLICATE) != 0 && nums.getDen(getAtomIdx()) > 1)
+      rank = nums.getFracRank(getAtomIdx());
+    else
+      rank = nums.getRank(mol.getAtomicNum(atom));
+    newTerminalChild(idx, atom, bond, rank, dist, flags);
   }
 
-  void add(Edge<A, B> e)
-  {
-    this.edges.add(e);
-  }
+  public abstract int getDistance();
 
-  public int getDistance()
-  {
-    return dist;
-  }
+  /**
+   * The index of the node's atom in the molecule, -1 for implicit hydrogens.
+   *
+   * @return the atom index
+   */
+  abstract int getAtomIdx();
 
-  public A getAtom()
-  {
-    return atom;
-  }
+  public abstract A getAtom();
+
+  /**
+   * The parent of this node when the digraph was built, this does not
+   * change with {@link Digraph#changeRoot(Node)}.
+   *
+   * @return the parent, null for the digraph's root
+   */
+  abstract Node<A, B> getParent();
+
+  /**
+   * Reverse the direction of the edge between this node and its parent.
+   */
+  abstract void flipParentEdge();
+
+  /**
+   * The rank of the node's (fractional) atomic number in the molecule,
+   * nodes with a higher atomic number have a higher rank and a rank of 0
+   * is an atomic number of 0.
+   *
+   * @return the rank
+   * @see Mancude.AtomNums
+   */
+  public abstract int getAtomicNumRank();
 
   public int getAtomicNumNumerator() {
-    return atomicnumNum;
+    return getDigraph().getMol().getAtomNums().getRankNum(getAtomicNumRank());
   }
 
   public int getAtomicNumDenominator() {
-    return atomicnumDen;
+    return getDigraph().getMol().getAtomNums().getRankDen(getAtomicNumRank());
   }
 
-  public Descriptor getAux()
-  {
-    return aux;
-  }
+  public abstract Descriptor getAux();
 
-  public void setAux(Descriptor desc)
-  {
-    this.aux = desc;
-  }
+  public abstract void setAux(Descriptor desc);
+
+  public abstract List<Edge<A, B>> getEdges();
 
-  public List<Edge<A, B>> getEdges()
+  /**
+   * Is the list the edges of this node (see {@link #getEdges()}), rather than
+   * a copy or subset.
+   *
+   * @param edges the edges
+   * @return the list is the edges of this node
+   */
+  public boolean isEdgeList(List<Edge<A, B>> edges)
   {
-    if ((flags & EXPANDED) == 0) {
-      flags |= EXPANDED;
-      g.expand(this);
-    }
-    return edges;
+    return edges == getEdges();
   }
 
   public List<Edge<A, B>> getEdges(A end)
@@ -203,24 +236,37 @@ public final class Node<A, B> {
     return edges;
   }
 
-  public boolean isSet(int mask)
-  {
-    return (mask & flags) != 0;
-  }
+  public abstract boolean isSet(int mask);
 
   public boolean isDuplicate()
   {
-    return (flags & DUPLICATE) != 0;
+    return isSet(DUPLICATE);
   }
 
-  public boolean isTerminal()
+  /**
+   * The isotope weight of the node, 0 if the node is a duplicate or has no
+   * mass number.
+   *
+   * @return the weight
+   * @see BaseMol#getIsotopeWeight(int)
+   */
+  public double getIsotopeWeight()
   {
-    return visit == null || ((flags & EXPANDED) != 0 && edges.size() == 1);
+    if (isDuplicate())
+      return 0;
+    BaseMol<A, B> mol = getDigraph().getMol();
+    int           idx = getAtomIdx();
+    if (idx >= 0)
+      return mol.getIsotopeWeight(idx);
+    int massnum = mol.getMassNum(null);
+    return massnum == 0 ? 0 : Isotope.getWeight(mol.getAtomicNum(null), massnum);
   }
 
+  public abstract boolean isTerminal();
+
   public boolean isExpanded()
   {
-    return (flags & EXPANDED) != 0;
+    return isSet(EXPANDED);
   }
 
   private static String getElementSymbol(int elem)
@@ -249,13 +295,16 @@ public final class Node<A, B> {
   public String toString()
   {
     StringBuilder sb = new StringBuilder();
+    Digraph<A, B> g    = getDigraph();
+    A             atom = getAtom();
+    Descriptor    aux  = getAux();
     if (isDuplicate())
       sb.append('(');
     if (g != null && atom != null) {
-      if (atomicnumDen == 1)
-        sb.append(getElementSymbol(atomicnumNum)).append(':').append(1+g.getMol().getAtomIdx(atom));
+      if (getAtomicNumDenominator() == 1)
+        sb.append(getElementSymbol(getAtomicNumNumerator())).append(':').append(1+g.getMol().getAtomIdx(atom));
       else
-        sb.append(atomicnumNum).append('/').append(atomicnumDen);
+        sb.append(getAtomicNumNumerator()).append('/').append(getAtomicNumDenominator());
     } else if (atom == null) {
       sb.append("H");
     }
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2020 John Mayfield
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.simolecule.centres;
+
+import com.simolecule.centres.config.Configuration;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the traces of the slowest configurations labelled, the report can
+ * be written as JSON or CSV. A profiler may be shared between threads.
+ *
+ * <pre>
+ * SlowCentreProfiler&lt;IAtom,IBond&gt; profiler = new SlowCentreProfiler&lt;&gt;(20);
+ * labeller.setListener(profiler);
+ * ...
+ * profiler.writeCsv(writer);
+ * </pre>
+ *
+ * @param <A> atom type
+ * @param <B> bond type
+ */
+public final class SlowCentreProfiler<A, B> implements LabelListener<A, B> {
+
+  private static final Comparator<Entry> BY_TIME = new Comparator<Entry>() {
+    @Override
+    public int compare(Entry a, Entry b)
+    {
+      return Long.compare(a.trace.getElapsedNanos(), b.trace.getElapsedNanos());
+    }
+  };
+
+  private final int                  maxEntries;
+  private final PriorityQueue<Entry> slowest;
+  private       long                 numTraced;
+
+  /**
+   * Create a profiler that keeps the specified number of slowest centres.
+   *
+   * @param maxEntries the number of centres to keep
+   */
+  public SlowCentreProfiler(int maxEntries)
+  {
+    if (maxEntries < 1)
+      throw new IllegalArgumentException("At least one entry must be kept");
+    this.maxEntries = maxEntries;
+    this.slowest = new PriorityQueue<>(maxEntries, BY_TIME);
+  }
+
+  /**
+   * A configuration that was slow to label.
+   */
+  public static final class Entry {
+
+    private final String     title;
+    private final String     type;
+    private final int[]      atoms;
+    private final LabelTrace trace;
+
+    private Entry(String title, String type, int[] atoms, LabelTrace trace)
+    {
+      this.title = title;
+      this.type = type;
+      this.atoms = atoms;
+      this.trace = trace;
+    }
+
+    /**
+     * The title of the molecule.
+     *
+     * @return the title, null if none
+     */
+    public String getTitle()
+    {
+      return title;
+    }
+
+    /**
+     * The type of configuration, e.g. Tetrahedral.
+     */
+    public String getType()
+    {
+      return type;
+    }
+
+    /**
+     * The (0-based) indices of the focus atoms.
+     */
+    public int[] getAtoms()
+    {
+      return atoms.clone();
+    }
+
+    public LabelTrace getTrace()
+    {
+      return trace;
+    }
+  }
+
+  @Override
+  public void begin(BaseMol<A, B> mol, Configuration<A, B> conf)
+  {
+  }
+
+  @Override
+  public void end(BaseMol<A, B> mol, Configuration<A, B> conf, LabelTrace trace)
+  {
+    synchronized (slowest) {
+      numTraced++;
+      if (slowest.size() == maxEntries) {
+        if (trace.getElapsedNanos() <= slowest.peek().trace.getElapsedNanos())
+          return;
+        slowest.poll();
+      }
+      A[]   foci  = conf.getFoci();
+      int[] atoms = new int[foci.length];
+      for (int i = 0; i < foci.length; i++)
+        atoms[i] = mol.getAtomIdx(foci[i]);
+      slowest.add(new Entry(mol.getTitle(), conf.getClass().getSimpleName(), atoms, trace));
+    }
+  }
+
+  /**
+   * Number of configurations traced.
+   *
+   * @return the count
+   */
+  public long getNumTraced()
+  {
+    synchronized (slowest) {
+      return numTraced;
+    }
+  }
+
+  /**
+   * The slowest configurations, slowest first.
+   *
+   * @return the entries
+   */
+  public List<Entry> getSlowest()
+  {
+    List<Entry> entries;
+    synchronized (slowest) {
+      entries = new ArrayList<>(slowest);
+    }
+    Collections.sort(entries, Collections.reverseOrder(BY_TIME));
+    return entries;
+  }
+
+  /**
+   * Write the report as CSV, one row per configuration slowest first.
+   *
+   * @param wtr the writer
+   * @throws IOException low-level IO error
+   */
+  public void writeCsv(Writer wtr) throws IOException
+  {
+    wtr.write("title,type,atoms,label,rule,prepass,nodes,spheres,comparisons,nanos,aux,aux_labelled,aux_cached\n");
+    for (Entry e : getSlowest()) {
+      LabelTrace t = e.trace;
+      wtr.write(csv(e.title));
+      wtr.write(',');
+      wtr.write(e.type);
+      wtr.write(',');
+      wtr.write(join(e.atoms, ' '));
+      wtr.write(',');
+      wtr.write(t.getDescriptor() != null ? t.getDescriptor().name() : "");
+      wtr.write(',');
+      wtr.write(t.getRuleName() != null ? t.getRuleName() : "");
+      wtr.write(',');
+      wtr.write(t.isPrePass() + "," + t.getNumNodes() + "," + t.getNumSpheres() + "," +
+                t.getNumComparisons() + "," + t.getElapsedNanos() + "," + t.getNumAux() + "," +
+                t.getNumAuxLabelled() + "," + t.getNumAuxCacheHits() + "\n");
+    }
+    wtr.flush();
+  }
+
+  /**
+   * Write the report as JSON, an array of objects slowest first.
+   *
+   * @param wtr the writer
+   * @throws IOException low-level IO error
+   */
+  public void writeJson(Writer wtr) throws IOException
+  {
+    wtr.write("[");
+    boolean first = true;
+    for (Entry e : getSlowest()) {
+      LabelTrace t = e.trace;
+      wtr.write(first ? "\n" : ",\n");
+      first = false;
+      wtr.write("  {\"title\": " + json(e.title) +
+                ", \"type\": " + json(e.type) +
+                ", \"atoms\": [" + join(e.atoms, ',') + "]" +
+                ", \"label\": " + json(t.getDescriptor() != null ? t.getDescriptor().name() : null) +
+                ", \"rule\": " + json(t.getRuleName()) +
+                ", \"prepass\": " + t.isPrePass() +
+                ", \"nodes\": " + t.getNumNodes() +
+                ", \"spheres\": " + t.getNumSpheres() +
+                ", \"comparisons\": " + t.getNumComparisons() +
+                ", \"nanos\": " + t.getElapsedNanos() +
+                ", \"aux\": " + t.getNumAux() +
+                ", \"aux_labelled\": " + t.getNumAuxLabelled() +
+                ", \"aux_cached\": " + t.getNumAuxCacheHits() + "}");
+    }
+    wtr.write(first ? "]\n" : "\n]\n");
+    wtr.flush();
+  }
+
+  private static String join(int[] vals, char sep)
+  {
+    StringBuilder sb = new StringBuilder();
+    for (int val : vals) {
+      if (sb.length() != 0)
+        sb.append(sep);
+      sb.append(val);
+    }
+    return sb.toString();
+  }
+
+  private static String csv(String str)
+  {
+    if (str == null)
+      return "";
+    if (str.indexOf(',') < 0 && str.indexOf('"') < 0 && str.indexOf('\n') < 0)
+      return str;
+    return '"' + str.replace("\"", "\"\"") + '"';
+  }
+
+  private static String json(String str)
+  {
+    if (str == null)
+      return "null";
+    StringBuilder sb = new StringBuilder(str.length() + 2);
+    sb.append('"');
+    for (int i = 0; i < str.length(); i++) {
+      char c = str.charAt(i);
+      switch (c) {
+        case '"':
+          sb.append("\\\"");
+          break;
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        case '\r':
+          sb.append("\\r");
+          break;
+        case '\t':
+          sb.append("\\t");
+          break;
+        default:
+          if (c < 0x20)
+            sb.append(String.format("\\u%04x", (int) c));
+          else
+            sb.append(c);
+      }
+    }
+    return sb.append('"').toString();
+  }
+}
@@ -36,7 +36,13 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
-public enum Stats {
+/**
+ * Global statistics of labelling runs, used to produce the tables of the
+ * labelling paper. To collect statistics the instance must be provided as the
+ * metrics of a labeller, see {@link Labeller#setMetrics(LabellingMetrics)}.
+ * {@link ConcurrentMetrics} is more suitable when labelling in parallel.
+ */
+public enum Stats implements LabellingMetrics {
   INSTANCE;
 
   public final static String[] RULE_NAMES = new String[]{"1a", "1b", "2", "3", "4a", "4b", "4c", "5", "6"};
@@ -46,6 +52,10 @@ public enum Stats {
   public final AtomicInteger         numConfigLabelled = new AtomicInteger();
   public final AtomicInteger         numAuxCalculated  = new AtomicInteger();
   public final AtomicInteger         numAuxLabelled    = new AtomicInteger();
+  public final AtomicInteger         numPrePass        = new AtomicInteger();
+  public final AtomicInteger         numPrePassLabelled = new AtomicInteger();
+  public final AtomicInteger         numAuxCacheHit    = new AtomicInteger();
+  public final AtomicInteger         numAuxCacheMiss   = new AtomicInteger();
   public int[]                 numCentresFreq    = new int[256];
   public final Map<Integer, Counter> digraphOrder      = new HashMap<>();
   public final Map<Integer, Counter> digraphSpheres    = new HashMap<>();
@@ -57,11 +67,15 @@ public enum Stats {
   }
 
 
-  public void clear() {
+  public synchronized void clear() {
     numConfigs.set(0);
     numConfigLabelled.set(0);
     numAuxCalculated.set(0);
     numAuxLabelled.set(0);
+    numPrePass.set(0);
+    numPrePassLabelled.set(0);
+    numAuxCacheHit.set(0);
+    numAuxCacheMiss.set(0);
     Arrays.fill(numCentresFreq, 0);
     digraphOrder.clear();
     digraphSpheres.clear();
@@ -69,6 +83,41 @@ public enum Stats {
     Arrays.fill(ruleFreqPrev, 0);
   }
 
+  @Override
+  public void countConfigs(int numConfigs)
+  {
+    countNumCenters(numConfigs);
+  }
+
+  @Override
+  public void countLabelled(Descriptor desc)
+  {
+    numConfigLabelled.incrementAndGet();
+  }
+
+  @Override
+  public void countAux(int numCalculated, int numLabelled)
+  {
+    numAuxCalculated.addAndGet(numCalculated);
+    numAuxLabelled.addAndGet(numLabelled);
+  }
+
+  @Override
+  public void countPrePass(boolean labelled)
+  {
+    numPrePass.incrementAndGet();
+    if (labelled)
+      numPrePassLabelled.incrementAndGet();
+  }
+
+  @Override
+  public void countAuxCache(int numHits, int numMisses)
+  {
+    numAuxCacheHit.addAndGet(numHits);
+    numAuxCacheMiss.addAndGet(numMisses);
+  }
+
+  @Override
   public synchronized void countRule(int ruleIdx)
   {
     this.ruleFreq[ruleIdx]++;
@@ -99,6 +148,7 @@ public enum Stats {
     return 1 + max;
   }
 
+  @Override
   public synchronized <A, B> void measureDigraph(Digraph<A, B> digraph)
   {
     int     numNodes = digraph.getNumNodes();
@@ -148,6 +198,14 @@ public enum Stats {
       bwtr.newLine();
       bwtr.write("Num Aux Used\t" + Stats.INSTANCE.numAuxLabelled);
       bwtr.newLine();
+      bwtr.write("Num Pre-pass\t" + Stats.INSTANCE.numPrePass);
+      bwtr.newLine();
+      bwtr.write("Num Pre-pass Labelled\t" + Stats.INSTANCE.numPrePassLabelled);
+      bwtr.newLine();
+      bwtr.write("Num Aux Cache Hits\t" + Stats.INSTANCE.numAuxCacheHit);
+      bwtr.newLine();
+      bwtr.write("Num Aux Cache Misses\t" + Stats.INSTANCE.numAuxCacheMiss);
+      bwtr.newLine();
     } catch (IOException e) {
       System.err.println("Could not write info stats: " + info);
     }
@@ -29,8 +29,11 @@ package com.simolecule.centres;
 /**
  * @author John May
  */
-public class TooManyNodesException extends RuntimeException {
+public class TooManyNodesException extends BudgetExceededException {
+
+    private static final long serialVersionUID = -2309584130176471203L;
+
     public TooManyNodesException(int limit) {
-        super("More than " + limit + " nodes were created. CIP assignment for this atom is probably intractable.");
+        super(Limit.NodeCount, "More than " + limit + " nodes were created. CIP assignment for this atom is probably intractable.");
     }
 }
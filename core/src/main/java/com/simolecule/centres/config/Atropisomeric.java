@@ -31,7 +31,6 @@ import com.simolecule.centres.Descriptor;
 import com.simolecule.centres.Digraph;
 import com.simolecule.centres.Edge;
 import com.simolecule.centres.Node;
-import com.simolecule.centres.Stats;
 import com.simolecule.centres.rules.Priority;
 import com.simolecule.centres.rules.SequenceRule;
 
@@ -86,6 +85,12 @@ public final class Atropisomeric<A, B> extends Configuration<A, B> {
     mol.setBondProp(bond, BaseMol.CIP_LABEL_KEY, desc);
   }
 
+  @Override
+  public void clearPrimaryLabel(BaseMol<A, B> mol)
+  {
+    mol.setBondProp(bond, BaseMol.CIP_LABEL_KEY, null);
+  }
+
   @Override
   public Descriptor label(SequenceRule<A, B> comp)
   {
@@ -94,8 +99,8 @@ public final class Atropisomeric<A, B> extends Configuration<A, B> {
     final A focus1 = getFoci()[0];
     final A focus2 = getFoci()[1];
 
-    Node<A, B> root1 = new Digraph<>(digraph.getMol(), focus1, bond).getRoot();
-    Node<A, B> root2 = new Digraph<>(digraph.getMol(), focus2, bond).getRoot();
+    Node<A, B> root1 = digraph.newDigraph().init(focus1, bond);
+    Node<A, B> root2 = digraph.newDigraph().init(focus2, bond);
 
     List<Edge<A, B>> edges1 = new ArrayList<>(root1.getEdges());
     edges1.remove(findInternalEdge(edges1, focus1, focus2));
@@ -126,8 +131,8 @@ public final class Atropisomeric<A, B> extends Configuration<A, B> {
     if (parity == 1)
       config ^= 0x3;
 
-    Stats.INSTANCE.countRule(Math.max(priority1.getRuleIdx(),
-                                      priority2.getRuleIdx()));
+    digraph.getMetrics().countRule(Math.max(priority1.getRuleIdx(),
+                                            priority2.getRuleIdx()));
 
     if (config == RIGHT) {
       if (priority1.isPseduoAsymettric() !=
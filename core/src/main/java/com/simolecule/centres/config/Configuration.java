@@ -86,6 +86,17 @@ public abstract class Configuration<A, B> {
 
   public abstract void setPrimaryLabel(BaseMol<A, B> mol, Descriptor desc);
 
+  /**
+   * Remove the label (if any) set on the molecule by
+   * {@link #setPrimaryLabel(BaseMol, Descriptor)}.
+   *
+   * @param mol the molecule
+   */
+  public void clearPrimaryLabel(BaseMol<A, B> mol)
+  {
+    mol.setAtomProp(getFocus(), BaseMol.CIP_LABEL_KEY, null);
+  }
+
   public void setDigraph(Digraph<A,B> digraph) {
     this.digraph = digraph;
   }
@@ -31,7 +31,6 @@ import com.simolecule.centres.Descriptor;
 import com.simolecule.centres.Digraph;
 import com.simolecule.centres.Edge;
 import com.simolecule.centres.Node;
-import com.simolecule.centres.Stats;
 import com.simolecule.centres.rules.Priority;
 import com.simolecule.centres.rules.SequenceRule;
 
@@ -95,6 +94,12 @@ public class ExtendedCisTrans<A, B> extends Configuration<A, B> {
     mol.setBondProp(bond, BaseMol.CIP_LABEL_KEY, desc);
   }
 
+  @Override
+  public void clearPrimaryLabel(BaseMol<A, B> mol)
+  {
+    mol.setBondProp(bond, BaseMol.CIP_LABEL_KEY, null);
+  }
+
   private Edge<A, B> findDoubleBond(List<Edge<A, B>> edges, BaseMol<A,B> mol)
   {
     for (Edge<A, B> edge : edges) {
@@ -163,7 +168,7 @@ public class ExtendedCisTrans<A, B> extends Configuration<A, B> {
         carriers[1].equals(edges2.get(0).getEnd().getAtom()))
       config ^= 0x3;
 
-    Stats.INSTANCE.countRule(Math.max(priority1.getRuleIdx(), priority2.getRuleIdx()));
+    digraph.getMetrics().countRule(Math.max(priority1.getRuleIdx(), priority2.getRuleIdx()));
 
     if (config == TOGETHER) {
       if (priority1.isPseduoAsymettric() !=
@@ -31,7 +31,6 @@ import com.simolecule.centres.Descriptor;
 import com.simolecule.centres.Digraph;
 import com.simolecule.centres.Edge;
 import com.simolecule.centres.Node;
-import com.simolecule.centres.Stats;
 import com.simolecule.centres.rules.Priority;
 import com.simolecule.centres.rules.SequenceRule;
 
@@ -326,8 +325,8 @@ public final class ExtendedTetrahedral<A, B> extends Configuration<A, B> {
     if (parity == 1)
       config ^= 0x3;
 
-    Stats.INSTANCE.countRule(Math.max(priority1.getRuleIdx(),
-                                      priority2.getRuleIdx()));
+    end1.getDigraph().getMetrics().countRule(Math.max(priority1.getRuleIdx(),
+                                                      priority2.getRuleIdx()));
 
     if (config == RIGHT) {
       if (priority1.isPseduoAsymettric() != priority2.isPseduoAsymettric())
@@ -31,11 +31,12 @@ import com.simolecule.centres.Descriptor;
 import com.simolecule.centres.Digraph;
 import com.simolecule.centres.Edge;
 import com.simolecule.centres.Node;
-import com.simolecule.centres.Stats;
 import com.simolecule.centres.rules.Priority;
 import com.simolecule.centres.rules.SequenceRule;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -170,8 +171,8 @@ public class Tetrahedral<A, B> extends Configuration<A, B> {
     if (idx < 4)
       ordered[idx] = focus;
 
-    if (node.getDigraph().getRoot() == node)
-      Stats.INSTANCE.countRule(priority.getRuleIdx());
+    if (node.equals(node.getDigraph().getRoot()))
+      node.getDigraph().getMetrics().countRule(priority.getRuleIdx());
 
     int parity = parity4(ordered, getCarriers());
 
@@ -197,6 +198,192 @@ public class Tetrahedral<A, B> extends Configuration<A, B> {
     return Descriptor.Unknown;
   }
 
+  /**
+   * Label the centre from the first two spheres of its ligands working
+   * directly on the molecule, no digraph is built. The ligands are compared
+   * as Rule 1a would, on the atomic number of the ligand atom then on the
+   * (descending) atomic numbers of its neighbours, including duplicates for
+   * bond orders and implicit hydrogens. If any two ligands are not separated
+   * by these spheres (or a wildcard or fractional atomic number is present)
+   * null is returned and the centre must be labelled with the digraph.
+   *
+   * @param mol   the molecule
+   * @param reach if not null, the atoms inspected are added on success
+   * @return the label, null if the first spheres did not separate the ligands
+   */
+  public Descriptor labelFirstSpheres(BaseMol<A, B> mol, Collection<A> reach)
+  {
+    return labelFirstSpheres(mol, reach, 2, false);
+  }
+
+  /**
+   * Label the centre from the first (1) or first two (2) spheres of its
+   * ligands as it would be found in the digraph of another centre, the
+   * focus must have only single bonds so that the ligands do not include
+   * bond order duplicates. The first sphere is the same wherever the centre
+   * is found so a label from it is the auxiliary descriptor of every
+   * occurrence, the second sphere is only the same if none of the ligands
+   * are ring closures.
+   *
+   * @param mol        the molecule
+   * @param numSpheres the number of spheres, 1 or 2
+   * @return the label, null if the spheres did not separate the ligands
+   */
+  public Descriptor labelFirstSpheres(BaseMol<A, B> mol, int numSpheres)
+  {
+    if (numSpheres != 1 && numSpheres != 2)
+      throw new IllegalArgumentException("Only the first one or two spheres may be used");
+    return labelFirstSpheres(mol, null, numSpheres, true);
+  }
+
+  private Descriptor labelFirstSpheres(BaseMol<A, B> mol, Collection<A> reach, int numSpheres, boolean aux)
+  {
+    A   focus = getFocus();
+    int hcnt  = mol.getNumHydrogens(focus);
+    if (hcnt > 1)
+      return null;
+    // when not the root a fractional atom has a duplicate for its charge
+    if (aux && mol.getAtomicNumDenominator(mol.getAtomIdx(focus)) > 1)
+      return null;
+
+    List<A> nbrs = new ArrayList<>(4);
+    for (B bond : mol.getBonds(focus)) {
+      if (nbrs.size() == 4)
+        return null;
+      // when not the root the focus has duplicates for bond orders
+      if (aux && mol.getBondOrder(bond) != 1)
+        return null;
+      nbrs.add(mol.getOther(bond, focus));
+    }
+
+    // 3 ligands is only valid with an implied lone pair, not a hydrogen
+    int numLigands = nbrs.size() + hcnt;
+    if (numLigands != 4 && (numLigands != 3 || hcnt != 0))
+      return null;
+
+    // key of each ligand: atomic number followed by the sorted (ascending)
+    // atomic numbers of the next sphere, an implicit hydrogen has no sphere
+    int[][] keys = new int[numLigands][];
+    for (int i = 0; i < nbrs.size(); i++) {
+      keys[i] = numSpheres == 1 ? atomKey(mol, nbrs.get(i)) : sphereKey(mol, focus, nbrs.get(i));
+      if (keys[i] == null)
+        return null;
+    }
+    if (hcnt != 0)
+      keys[nbrs.size()] = new int[]{1};
+
+    // insertion sort high to low priority, any tie and we give up
+    int[] order = new int[numLigands];
+    for (int i = 0; i < numLigands; i++) {
+      order[i] = i;
+      for (int j = i; j > 0; j--) {
+        int cmp = compareKeys(keys[order[j - 1]], keys[order[j]]);
+        if (cmp == 0)
+          return null;
+        if (cmp > 0)
+          break;
+        int tmp = order[j];
+        order[j] = order[j - 1];
+        order[j - 1] = tmp;
+      }
+    }
+
+    Object[] ordered = new Object[4];
+    int      idx     = 0;
+    for (int i : order) {
+      if (i < nbrs.size())
+        ordered[idx++] = nbrs.get(i);
+    }
+    if (idx < 4)
+      ordered[idx] = focus;
+
+    int parity = parity4(ordered, getCarriers());
+    if (parity == 0)
+      return null; // let the digraph report the mismatch
+
+    int config = this.getConfig();
+    if (parity == 1)
+      config ^= 0x3;
+
+    Descriptor desc;
+    if (config == LEFT)
+      desc = Descriptor.S;
+    else if (config == RIGHT)
+      desc = Descriptor.R;
+    else
+      return null;
+
+    if (reach != null) {
+      reach.add(focus);
+      for (A nbr : nbrs) {
+        reach.add(nbr);
+        for (B bond : mol.getBonds(nbr))
+          reach.add(mol.getOther(bond, nbr));
+      }
+    }
+    return desc;
+  }
+
+  private static <A, B> int[] atomKey(BaseMol<A, B> mol, A atom)
+  {
+    int anum = mol.getAtomicNum(atom);
+    return anum != 0 ? new int[]{anum} : null;
+  }
+
+  private static <A, B> int[] sphereKey(BaseMol<A, B> mol, A focus, A atom)
+  {
+    int anum = mol.getAtomicNum(atom);
+    if (anum == 0)
+      return null;
+    // duplicates would take the fractional atomic number
+    if (mol.getAtomicNumDenominator(mol.getAtomIdx(atom)) > 1)
+      return null;
+    int[] key = new int[8];
+    int   len = 0;
+    key[len++] = anum;
+    for (B bond : mol.getBonds(atom)) {
+      A nbr = mol.getOther(bond, atom);
+      if (nbr.equals(focus))
+        continue;
+      int nbrAnum = mol.getAtomicNum(nbr);
+      if (nbrAnum == 0)
+        return null;
+      int num = Math.max(1, mol.getBondOrder(bond));
+      for (int i = 0; i < num; i++) {
+        if (len == key.length)
+          key = Arrays.copyOf(key, 2 * len);
+        key[len++] = nbrAnum;
+      }
+    }
+    int hcnt = mol.getNumHydrogens(atom);
+    for (int i = 0; i < hcnt; i++) {
+      if (len == key.length)
+        key = Arrays.copyOf(key, 2 * len);
+      key[len++] = 1;
+    }
+    key = Arrays.copyOf(key, len);
+    Arrays.sort(key, 1, len);
+    return key;
+  }
+
+  /**
+   * Compare the atomic number, then the next sphere from highest to lowest,
+   * a ligand with more atoms in the next sphere is higher when the common
+   * atoms are equal.
+   */
+  private static int compareKeys(int[] a, int[] b)
+  {
+    int cmp = Integer.compare(a[0], b[0]);
+    if (cmp != 0)
+      return cmp;
+    for (int i = a.length - 1, j = b.length - 1; i > 0 && j > 0; i--, j--) {
+      cmp = Integer.compare(a[i], b[j]);
+      if (cmp != 0)
+        return cmp;
+    }
+    return Integer.compare(a.length, b.length);
+  }
+
   @Override
   public Descriptor label(Node<A, B> node, Digraph<A,B> digraph, SequenceRule<A, B> comp) {
     digraph.changeRoot(node);
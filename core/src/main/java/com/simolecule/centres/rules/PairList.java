@@ -30,24 +30,32 @@ package com.simolecule.centres.rules;
 import com.simolecule.centres.Descriptor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
 
 /**
  * Implementation of a descriptor list that allows descriptors to be added and
- * ignored. The list maintains an integer value throughout which stores the
- * pairing of descriptors and allows easy comparison between descriptor lists in
- * that higher priority descriptor pairing will always have a higher integer
- * value. The integer value can be access via the {@link #getPairing()} method.
+ * ignored. The list maintains a bit set of the like/unlike pairing of each
+ * descriptor with the first (reference) descriptor. The first descriptor is
+ * held in the highest bit so lists can be compared a word at a time and
+ * a higher priority descriptor pairing will always compare higher. There is
+ * no limit on the number of descriptors, the pairing of the first 31 can be
+ * accessed as an integer via the {@link #getPairing()} method.
  *
  * @author John May
  * @see Descriptor
  */
 public class PairList implements Comparable<PairList> {
 
-  private final List<Descriptor> descriptors = new ArrayList<>();
-  private       int              pairing     = 0;
+  private static final Descriptor[] DESCRIPTORS = Descriptor.values();
+
+  // ordinals of the reference descriptors (R/S)
+  private byte[] descriptors = new byte[16];
+  // bit i (from the highest bit of the first word) is set if the i'th
+  // descriptor is like the first
+  private long[] like        = new long[1];
+  private int    size        = 0;
 
   public PairList() {
 
@@ -69,12 +77,14 @@ public class PairList implements Comparable<PairList> {
   public PairList(PairList head, PairList tail)
   {
     // add descriptors to the new instance (ignored descriptors not added)
-    addAll(head.descriptors);
-    addAll(tail.descriptors);
+    addAll(head);
+    addAll(tail);
   }
 
   public Descriptor getRefDescriptor() {
-    return ref(descriptors.get(0));
+    if (size == 0)
+      throw new IndexOutOfBoundsException("Empty descriptor list");
+    return DESCRIPTORS[descriptors[0]];
   }
 
   /**
@@ -95,7 +105,7 @@ public class PairList implements Comparable<PairList> {
       case P:
       case seqTrans:
       case seqCis:
-        addAndPair(descriptor);
+        addAndPair(ref(descriptor));
         return true;
       default:
         return false;
@@ -121,19 +131,21 @@ public class PairList implements Comparable<PairList> {
   }
 
   /**
-   * Adds the descriptor to the descriptor list and stores the pair in an set
-   * bit (32-bit integer).
+   * Adds the (reference) descriptor to the descriptor list and sets the
+   * pairing bit if it is like the first.
    *
    * @param descriptor the descriptor to add an pair
    */
   private void addAndPair(Descriptor descriptor)
   {
-    // if this isn't the first descriptor - check the pairing
-    if (!descriptors.isEmpty() && descriptors.get(0) == descriptor) {
-      // set the bit to indicate a pair
-      pairing |= 0x1 << 31 - descriptors.size();
-    }
-    descriptors.add(ref(descriptor));
+    if (size == descriptors.length)
+      descriptors = Arrays.copyOf(descriptors, 2 * size);
+    if ((size >>> 6) == like.length)
+      like = Arrays.copyOf(like, 2 * like.length);
+    byte ordinal = (byte) descriptor.ordinal();
+    if (size == 0 || descriptors[0] == ordinal)
+      like[size >>> 6] |= Long.MIN_VALUE >>> (size & 0x3f);
+    descriptors[size++] = ordinal;
   }
 
   /**
@@ -148,18 +160,35 @@ public class PairList implements Comparable<PairList> {
       add(descriptor);
   }
 
+  private void addAll(PairList that)
+  {
+    for (int i = 0; i < that.size; i++)
+      addAndPair(DESCRIPTORS[that.descriptors[i]]);
+  }
+
+  /**
+   * Number of descriptors in the list.
+   *
+   * @return the size
+   */
+  public int size()
+  {
+    return size;
+  }
 
   /**
    * Access a positive integer that represents the like/unlike pairings of
    * this descriptor list. The like/unlike is represented by set bits in an
    * integer value and means larger integer values indicates a higher
-   * descriptor pairing preference.
+   * descriptor pairing preference. Only the first 31 descriptors after the
+   * reference are represented, {@link #compareTo(PairList)} considers all.
    *
    * @return an integer representing the descriptor pairings
    */
   public int getPairing()
   {
-    return pairing;
+    // drop the reference bit, the following 31 bits are the pairing
+    return (int) ((like[0] << 1) >>> 33);
   }
 
 
@@ -184,7 +213,7 @@ public class PairList implements Comparable<PairList> {
     for (PairList list : lists) {
 
       // tail isn't empty  - create a new list with this list as the head
-      if (!list.descriptors.isEmpty()) {
+      if (list.size != 0) {
         created.add(new PairList(this, list));
       }
 
@@ -209,19 +238,14 @@ public class PairList implements Comparable<PairList> {
     StringBuilder sb = new StringBuilder();
 
     // handles cases that would break the toString method
-    if (descriptors.isEmpty() || descriptors.get(0) == null)
+    if (size == 0)
       return sb.toString();
 
-    Iterator<Descriptor> it    = descriptors.iterator();
-    Descriptor           basis = it.next();
-
-    sb.append(basis).append(":");
-
-    basis = ref(basis);
+    sb.append(DESCRIPTORS[descriptors[0]]).append(":");
 
     // build like (l) / unlike (u) descriptor pairing
-    while (it.hasNext())
-      sb.append(basis.equals(ref(it.next())) ? "l" : "u");
+    for (int i = 1; i < size; i++)
+      sb.append((like[i >>> 6] & (Long.MIN_VALUE >>> (i & 0x3f))) != 0 ? "l" : "u");
 
     return sb.toString();
   }
@@ -230,15 +254,15 @@ public class PairList implements Comparable<PairList> {
   @Override
   public int compareTo(PairList that)
   {
-    if (descriptors.size() != that.descriptors.size())
+    if (this.size != that.size)
       throw new IllegalArgumentException("Descriptor lists should be the same length!");
-    Descriptor thisRef = this.descriptors.get(0);
-    Descriptor thatRef = that.descriptors.get(0);
-    for (int i = 1; i < this.descriptors.size(); i++) {
-      if (thisRef == this.descriptors.get(i) && thatRef != that.descriptors.get(i))
-        return +1;
-      if (thisRef != this.descriptors.get(i) && thatRef == that.descriptors.get(i))
-        return -1;
+    // the first differing pairing (highest differing bit) decides, a like
+    // pairing is preferred
+    int numWords = (size + 63) >>> 6;
+    for (int i = 0; i < numWords; i++) {
+      long diff = this.like[i] ^ that.like[i];
+      if (diff != 0)
+        return (this.like[i] << Long.numberOfLeadingZeros(diff)) < 0 ? +1 : -1;
     }
     return 0;
   }
@@ -250,7 +274,7 @@ public class PairList implements Comparable<PairList> {
    */
   public void clear()
   {
-    pairing = 0;
-    descriptors.clear();
+    Arrays.fill(like, 0, (size + 63) >>> 6, 0L);
+    size = 0;
   }
 }
@@ -28,7 +28,6 @@ package com.simolecule.centres.rules;
 
 import com.simolecule.centres.BaseMol;
 import com.simolecule.centres.Edge;
-import com.simolecule.centres.Mancude;
 
 public final class Rule1a<A, B> extends SequenceRule<A, B> {
 
@@ -43,14 +42,11 @@ public final class Rule1a<A, B> extends SequenceRule<A, B> {
   @Override
   public int compare(Edge<A, B> a, Edge<A, B> b)
   {
-    final int anum = a.getEnd().getAtomicNumNumerator();
-    final int aden = a.getEnd().getAtomicNumDenominator();
-    final int bnum = b.getEnd().getAtomicNumNumerator();
-    final int bden = b.getEnd().getAtomicNumDenominator();
-    if (anum == 0 || bnum == 0)
+    // ranks order the (fractional) atomic numbers of the molecule
+    final int arank = a.getEnd().getAtomicNumRank();
+    final int brank = b.getEnd().getAtomicNumRank();
+    if (arank == 0 || brank == 0)
       return SequenceRule.COMP_TO_WILDCARD;
-    if (aden == 1 && bden == 1)
-      return Integer.compare(anum, bnum);
-    return Mancude.Fraction.compare(anum, aden, bnum, bden);
+    return Integer.compare(arank, brank);
   }
 }
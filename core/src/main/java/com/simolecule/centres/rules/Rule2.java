@@ -52,25 +52,15 @@ public class Rule2<A, B> extends SequenceRule<A, B> {
   @Override
   public int compare(Edge<A, B> a, Edge<A, B> b)
   {
-    int aAtomNum = mol.getAtomicNum(a.getEnd().getAtom());
-    int bAtomNum = mol.getAtomicNum(b.getEnd().getAtom());
-    int aMassNum = a.getEnd().isDuplicate() ? 0 : mol.getMassNum(a.getEnd().getAtom());
-    int bMassNum = b.getEnd().isDuplicate() ? 0 : mol.getMassNum(b.getEnd().getAtom());
-    if (aMassNum == 0 && bMassNum == 0)
+    double aweight = a.getEnd().getIsotopeWeight();
+    double bweight = b.getEnd().getIsotopeWeight();
+    if (aweight == 0 && bweight == 0)
       return 0;
-    Isotope aiso = Isotope.find(aAtomNum, aMassNum);
-    Isotope biso = Isotope.find(bAtomNum, bMassNum);
-
-    double aweight, bweight;
-    if (aiso == null)
-      aweight = aMassNum;
-    else
-      aweight = aiso.getWeight();
-    if (biso == null)
-      bweight = bMassNum;
-    else
-      bweight = biso.getWeight();
-
+    // no mass number, compare to the natural abundance weight
+    if (aweight == 0)
+      aweight = Isotope.getWeight(mol.getAtomicNum(a.getEnd().getAtom()), 0);
+    if (bweight == 0)
+      bweight = Isotope.getWeight(mol.getAtomicNum(b.getEnd().getAtom()), 0);
     return Double.compare(aweight, bweight);
   }
 }
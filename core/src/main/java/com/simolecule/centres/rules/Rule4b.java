@@ -48,6 +48,18 @@ public class Rule4b<A, B>
 
   private final Descriptor ref;
 
+  // reference sorters, built from the sorter of this rule when first needed
+  private Sort<A, B> refBase, refSorterR, refSorterS;
+
+  // reused by compare(), see inUse
+  private final PairList[]        poolA  = {new PairList(), new PairList()};
+  private final PairList[]        poolB  = {new PairList(), new PairList()};
+  private final List<PairList>    listA  = new ArrayList<>(2);
+  private final List<PairList>    listB  = new ArrayList<>(2);
+  private final Deque<Node<A, B>> queueA = new ArrayDeque<>();
+  private final Deque<Node<A, B>> queueB = new ArrayDeque<>();
+  private       boolean           inUse  = false;
+
   public Rule4b(BaseMol<A, B> mol)
   {
     super(mol);
@@ -160,24 +172,38 @@ public class Rule4b<A, B>
     return eqNodes;
   }
 
-  private List<PairList> newPairLists(List<Descriptor> descriptors)
+  /**
+   * Fill the pair lists with the reference descriptors, the lists are taken
+   * from the pool (if provided) and cleared.
+   */
+  private List<PairList> newPairLists(List<Descriptor> descriptors, PairList[] pool,
+                                      List<PairList> pairs)
   {
+    pairs.clear();
     if (descriptors == null)
-      return Collections.emptyList();
-    List<PairList> pairs = new ArrayList<>();
-    for (Descriptor descriptor : descriptors) {
-      pairs.add(new PairList(descriptor));
+      return pairs;
+    for (int i = 0; i < descriptors.size(); i++) {
+      PairList plist;
+      if (pool != null && i < pool.length) {
+        plist = pool[i];
+        plist.clear();
+      } else {
+        plist = new PairList();
+      }
+      plist.add(descriptors.get(i));
+      pairs.add(plist);
     }
     return pairs;
   }
 
-  private void fillPairs(Node<A, B> beg, PairList plist)
+  private void fillPairs(Node<A, B> beg, PairList plist, Deque<Node<A, B>> queue)
   {
-    Sort<A, B>        sorter = getRefSorter(plist.getRefDescriptor());
-    Deque<Node<A, B>> queue  = new ArrayDeque<>();
+    Sort<A, B> sorter = getRefSorter(plist.getRefDescriptor());
+    queue.clear();
     queue.add(beg);
     while (!queue.isEmpty()) {
       Node<A, B> node = queue.poll();
+      node.getDigraph().checkDeadline();
       plist.add(node.getAux());
       List<Edge<A, B>> edges = node.getEdges();
       sorter.prioritise(node, edges);
@@ -189,12 +215,13 @@ public class Rule4b<A, B>
     }
   }
 
-  private int comparePairs(Node<A, B> a, Node<A, B> b, Descriptor refA, Descriptor refB)
+  private int comparePairs(Node<A, B> a, Node<A, B> b, Descriptor refA, Descriptor refB,
+                           Deque<Node<A, B>> aQueue, Deque<Node<A, B>> bQueue)
   {
-    Sort<A, B>        aSorter = getRefSorter(refA);
-    Sort<A, B>        bSorter = getRefSorter(refB);
-    Deque<Node<A, B>> aQueue  = new ArrayDeque<>();
-    Deque<Node<A, B>> bQueue  = new ArrayDeque<>();
+    Sort<A, B> aSorter = getRefSorter(refA);
+    Sort<A, B> bSorter = getRefSorter(refB);
+    aQueue.clear();
+    bQueue.clear();
     aQueue.add(a);
     bQueue.add(b);
     while (!aQueue.isEmpty() && !bQueue.isEmpty()) {
@@ -202,6 +229,7 @@ public class Rule4b<A, B>
       Node<A, B> bNode = bQueue.poll();
 
       assert aNode != null && bNode != null;
+      aNode.getDigraph().checkDeadline();
       Descriptor desA = aNode.getAux();
       Descriptor desB = bNode.getAux();
 
@@ -234,7 +262,22 @@ public class Rule4b<A, B>
 
   private Sort<A, B> getRefSorter(Descriptor refA)
   {
-    List<SequenceRule<A, B>> rules = new ArrayList<>(getSorter().getRules());
+    Sort<A, B> base = getSorter();
+    if (base != refBase) {
+      refBase = base;
+      refSorterR = newRefSorter(base, Descriptor.R);
+      refSorterS = newRefSorter(base, Descriptor.S);
+    }
+    if (refA == Descriptor.R)
+      return refSorterR;
+    if (refA == Descriptor.S)
+      return refSorterS;
+    return newRefSorter(base, refA);
+  }
+
+  private Sort<A, B> newRefSorter(Sort<A, B> base, Descriptor refA)
+  {
+    List<SequenceRule<A, B>> rules = new ArrayList<>(base.getRules());
     rules.remove(this);
     rules.add(new Rule4b<>(getMol(), refA));
     return new Sort<>(rules);
@@ -258,27 +301,47 @@ public class Rule4b<A, B>
           return -1;
       }
     } else {
-      List<PairList> list1 = newPairLists(getReferenceDescriptors(a.getEnd()));
-      List<PairList> list2 = newPairLists(getReferenceDescriptors(b.getEnd()));
+      // the buffers are only reused if this is not a nested comparison
+      boolean           reuse  = !inUse;
+      Deque<Node<A, B>> queueA = reuse ? this.queueA : new ArrayDeque<Node<A, B>>();
+      Deque<Node<A, B>> queueB = reuse ? this.queueB : new ArrayDeque<Node<A, B>>();
+      inUse = true;
+      try {
+        List<PairList> list1 = newPairLists(getReferenceDescriptors(a.getEnd()),
+                                            reuse ? poolA : null,
+                                            reuse ? listA : new ArrayList<PairList>(2));
+        List<PairList> list2 = newPairLists(getReferenceDescriptors(b.getEnd()),
+                                            reuse ? poolB : null,
+                                            reuse ? listB : new ArrayList<PairList>(2));
 
-      if (list1.isEmpty() != list2.isEmpty())
-        throw new InternalError("Ligands should be topologically equivalent!");
+        if (list1.isEmpty() != list2.isEmpty())
+          throw new InternalError("Ligands should be topologically equivalent!");
 
-      if (list1.size() == 1) {
-        return comparePairs(a.getEnd(), b.getEnd(),
-                            list1.get(0).getRefDescriptor(),
-                            list2.get(0).getRefDescriptor());
-      } else if (list1.size() > 1) {
-        for (PairList plist : list1)
-          fillPairs(a.getEnd(), plist);
-        for (PairList plist : list2)
-          fillPairs(b.getEnd(), plist);
-        Collections.sort(list1, Collections.reverseOrder());
-        Collections.sort(list2, Collections.reverseOrder());
-        for (int i = 0; i < list1.size(); i++) {
-          int cmp = list1.get(i).compareTo(list2.get(i));
-          if (cmp != 0)
-            return cmp;
+        if (list1.size() == 1) {
+          return comparePairs(a.getEnd(), b.getEnd(),
+                              list1.get(0).getRefDescriptor(),
+                              list2.get(0).getRefDescriptor(),
+                              queueA, queueB);
+        } else if (list1.size() > 1) {
+          for (PairList plist : list1)
+            fillPairs(a.getEnd(), plist, queueA);
+          for (PairList plist : list2)
+            fillPairs(b.getEnd(), plist, queueA);
+          Collections.sort(list1, Collections.reverseOrder());
+          Collections.sort(list2, Collections.reverseOrder());
+          for (int i = 0; i < list1.size(); i++) {
+            int cmp = list1.get(i).compareTo(list2.get(i));
+            if (cmp != 0)
+              return cmp;
+          }
+        }
+      } finally {
+        if (reuse) {
+          inUse = false;
+          queueA.clear();
+          queueB.clear();
+          listA.clear();
+          listB.clear();
         }
       }
     }
@@ -41,6 +41,15 @@ public class Rule5New<A, B>
 
   private final Descriptor ref;
 
+  // reference sorters, built from the sorter of this rule when first needed
+  private Sort<A, B> refBase, refSorterR, refSorterS;
+
+  // reused by compare(), see borrow()
+  private final PairList          listA = new PairList();
+  private final PairList          listB = new PairList();
+  private final Deque<Node<A, B>> queue = new ArrayDeque<>();
+  private       boolean           inUse = false;
+
   public Rule5New(BaseMol<A, B> mol)
   {
     super(mol);
@@ -59,13 +68,14 @@ public class Rule5New<A, B>
     return true;
   }
 
-  private void fillPairs(Node<A, B> beg, PairList plist)
+  private void fillPairs(Node<A, B> beg, PairList plist, Deque<Node<A, B>> queue)
   {
-    Sort<A, B>        sorter = getRefSorter(plist.getRefDescriptor());
-    Deque<Node<A, B>> queue  = new ArrayDeque<>();
+    Sort<A, B> sorter = getRefSorter(plist.getRefDescriptor());
+    queue.clear();
     queue.add(beg);
     while (!queue.isEmpty()) {
       Node<A, B> node = queue.poll();
+      node.getDigraph().checkDeadline();
       plist.add(node.getAux());
       List<Edge<A, B>> edges = node.getEdges();
       sorter.prioritise(node, edges);
@@ -79,12 +89,43 @@ public class Rule5New<A, B>
 
   private Sort<A, B> getRefSorter(Descriptor refA)
   {
-    List<SequenceRule<A, B>> rules = new ArrayList<>(getSorter().getRules());
+    Sort<A, B> base = getSorter();
+    if (base != refBase) {
+      refBase = base;
+      refSorterR = newRefSorter(base, Descriptor.R);
+      refSorterS = newRefSorter(base, Descriptor.S);
+    }
+    if (refA == Descriptor.R)
+      return refSorterR;
+    if (refA == Descriptor.S)
+      return refSorterS;
+    return newRefSorter(base, refA);
+  }
+
+  private Sort<A, B> newRefSorter(Sort<A, B> base, Descriptor refA)
+  {
+    List<SequenceRule<A, B>> rules = new ArrayList<>(base.getRules());
     rules.remove(this);
     rules.add(new Rule5New<>(getMol(), refA));
     return new Sort<>(rules);
   }
 
+  /**
+   * Compare the pair lists of the two ligands built with the reference
+   * descriptor.
+   */
+  private int comparePairs(Node<A, B> a, Node<A, B> b, Descriptor refA,
+                           PairList listA, PairList listB, Deque<Node<A, B>> queue)
+  {
+    listA.clear();
+    listA.add(refA);
+    listB.clear();
+    listB.add(refA);
+    fillPairs(a, listA, queue);
+    fillPairs(b, listB, queue);
+    return listA.compareTo(listB);
+  }
+
   @Override
   public int compare(Edge<A, B> a, Edge<A, B> b)
   {
@@ -104,24 +145,29 @@ public class Rule5New<A, B>
       }
       return 0;
     } else {
-      PairList listRA = new PairList(Descriptor.R);
-      PairList listRB = new PairList(Descriptor.R);
-      PairList listSA = new PairList(Descriptor.S);
-      PairList listSB = new PairList(Descriptor.S);
-      fillPairs(a.getEnd(), listRA);
-      fillPairs(a.getEnd(), listSA);
-      fillPairs(b.getEnd(), listRB);
-      fillPairs(b.getEnd(), listSB);
-      int cmpR = listRA.compareTo(listRB);
-      int cmpS = listSA.compareTo(listSB);
-      // -2/+2 for psuedo-asymetric
-      // -1/+1 if not (e.g. the R > R and S > S lists)
-      if (cmpR < 0)
-        return cmpS < 0 ? -1 : -2;
-      else if (cmpR > 0)
-        return cmpS > 0 ? +1 : +2;
-      else
-        return 0;
+      // the buffers are only reused if this is not a nested comparison
+      boolean           reuse = !inUse;
+      PairList          listA = reuse ? this.listA : new PairList();
+      PairList          listB = reuse ? this.listB : new PairList();
+      Deque<Node<A, B>> queue = reuse ? this.queue : new ArrayDeque<Node<A, B>>();
+      inUse = true;
+      try {
+        int cmpR = comparePairs(a.getEnd(), b.getEnd(), Descriptor.R, listA, listB, queue);
+        if (cmpR == 0)
+          return 0;
+        int cmpS = comparePairs(a.getEnd(), b.getEnd(), Descriptor.S, listA, listB, queue);
+        // -2/+2 for psuedo-asymetric
+        // -1/+1 if not (e.g. the R > R and S > S lists)
+        if (cmpR < 0)
+          return cmpS < 0 ? -1 : -2;
+        else
+          return cmpS > 0 ? +1 : +2;
+      } finally {
+        if (reuse) {
+          inUse = false;
+          queue.clear();
+        }
+      }
     }
   }
 }
@@ -101,6 +101,7 @@ public abstract class SequenceRule<A, B> implements Comparator<Edge<A, B>> {
       a = aQueue.poll();
       b = bQueue.poll();
       assert a != null && b != null;
+      a.getEnd().getDigraph().checkDeadline();
       List<Edge<A, B>> as = a.getEnd().getEdges();
       List<Edge<A, B>> bs = b.getEnd().getEdges();
 
@@ -26,6 +26,8 @@
 
 package com.simolecule.centres.rules;
 
+import com.simolecule.centres.ComparisonCache;
+import com.simolecule.centres.Digraph;
 import com.simolecule.centres.Edge;
 import com.simolecule.centres.Node;
 
@@ -65,10 +67,32 @@ public class Sort<A, B> {
     return prioritise(node, edges, true);
   }
 
+  /**
+   * Prioritise the edges of a node. When the edges are those of the node
+   * the order is memoized, sorting again with this sorter is then
+   * skipped until the digraph changes (see {@link Digraph#getVersion()}) or
+   * the edges are reordered by another sorter.
+   *
+   * @param node the node
+   * @param edges the edges
+   * @param deep deep (recursive) comparison
+   * @return the priority
+   */
   public Priority prioritise(Node<A, B> node, List<Edge<A, B>> edges, boolean deep)
   {
+    Memo memo    = null;
+    int  version = node.getDigraph().getVersion();
+    if (node.isExpanded() && node.isEdgeList(edges)) {
+      memo = node.getSortMemo();
+      if (memo == null)
+        node.setSortMemo(memo = new Memo());
+      else if (memo.isSorted(this, deep, version))
+        return new Priority(memo.isUnique(deep), memo.isWildcardFound(deep), ruleMax, memo.isPseudoAsym(deep));
+    }
+
     boolean unique = true;
     boolean foundWildcard  = false;
+    boolean swapped = false;
     int     numPseudoAsym = 0;
 
     outer:
@@ -91,6 +115,7 @@ public class Sort<A, B> {
 
         if (cmp < 0) {
           swap(edges, j, j - 1);
+          swapped = true;
         } else {
           if (cmp == 0)
             unique = false;
@@ -99,6 +124,13 @@ public class Sort<A, B> {
       }
     }
 
+    if (memo != null) {
+      if (swapped)
+        memo.order++;
+      if (!foundWildcard && version == node.getDigraph().getVersion())
+        memo.setSorted(this, deep, version, unique, foundWildcard, numPseudoAsym == 1);
+    }
+
     return new Priority(unique, foundWildcard, ruleMax, numPseudoAsym == 1);
   }
 
@@ -110,9 +142,18 @@ public class Sort<A, B> {
     else if (a.isBeg(node) && !b.isBeg(node))
       return -1;
 
+    // comparisons are memoized for the digraph, a deep comparison may sort
+    // the branches but the comparison does not depend on their order
+    node.getDigraph().checkDeadline();
+    ComparisonCache<A, B> cache = node.getDigraph().getComparisonCache();
     for (int i = 0; i < rules.size(); i++) {
       SequenceRule<A, B> rule = rules.get(i);
-      int                cmp  = rule.getComparision(a, b, deep);
+      int                cmp  = cache.get(rule, a, b, deep);
+      if (cmp == ComparisonCache.MISSING) {
+        int version = node.getDigraph().getVersion();
+        cmp = rule.getComparision(a, b, deep);
+        cache.put(rule, a, b, deep, cmp, version);
+      }
       if (cmp != 0) {
         ruleMax = Math.max(ruleMax, i);
         return cmp;
@@ -149,4 +190,69 @@ public class Sort<A, B> {
 
   }
 
+  /**
+   * Memo of the prioritisation of a node's edges, separately for shallow
+   * and deep sorts. The memo of a sorter is valid while the digraph version
+   * is unchanged and no sort has since reordered the edges.
+   */
+  public static final class Memo {
+
+    private static final int UNIQUE   = 0x1;
+    private static final int WILDCARD = 0x2;
+    private static final int PSEUDO   = 0x4;
+
+    // incremented each time the edges are reordered
+    private int order;
+
+    // shallow and deep comparisons are memoized separately
+    private Object shallowSorter, deepSorter;
+    private int    shallowVersion, deepVersion;
+    private int    shallowStamp, deepStamp;
+    private int    shallowFlags, deepFlags;
+
+    boolean isSorted(Object sorter, boolean deep, int version)
+    {
+      if (deep)
+        return deepSorter == sorter && deepVersion == version && deepStamp == order;
+      else
+        return shallowSorter == sorter && shallowVersion == version && shallowStamp == order;
+    }
+
+    void setSorted(Object sorter, boolean deep, int version,
+                   boolean unique, boolean wildcard, boolean pseudo)
+    {
+      int flags = (unique ? UNIQUE : 0) | (wildcard ? WILDCARD : 0) | (pseudo ? PSEUDO : 0);
+      if (deep) {
+        deepSorter = sorter;
+        deepVersion = version;
+        deepStamp = order;
+        deepFlags = flags;
+      } else {
+        shallowSorter = sorter;
+        shallowVersion = version;
+        shallowStamp = order;
+        shallowFlags = flags;
+      }
+    }
+
+    private int flags(boolean deep)
+    {
+      return deep ? deepFlags : shallowFlags;
+    }
+
+    boolean isUnique(boolean deep)
+    {
+      return (flags(deep) & UNIQUE) != 0;
+    }
+
+    boolean isWildcardFound(boolean deep)
+    {
+      return (flags(deep) & WILDCARD) != 0;
+    }
+
+    boolean isPseudoAsym(boolean deep)
+    {
+      return (flags(deep) & PSEUDO) != 0;
+    }
+  }
 }
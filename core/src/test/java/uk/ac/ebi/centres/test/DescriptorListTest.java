@@ -170,6 +170,21 @@ public class DescriptorListTest {
   }
 
 
+  @Test
+  public void compareLongLists() {
+    PairList list1 = new PairList();
+    PairList list2 = new PairList();
+    for (int i = 0; i < 200; i++) {
+      list1.add(Descriptor.R);
+      list2.add(i == 150 ? Descriptor.S : Descriptor.R);
+    }
+    Assert.assertEquals(+1, list1.compareTo(list2));
+    Assert.assertEquals(-1, list2.compareTo(list1));
+    Assert.assertEquals(0, list1.compareTo(list1));
+    // pairings beyond the first 31 do not corrupt the integer value
+    Assert.assertEquals(Integer.MAX_VALUE, list2.getPairing());
+  }
+
   @Test
   public void testClear() {
 
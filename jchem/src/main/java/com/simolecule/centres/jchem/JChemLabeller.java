@@ -41,6 +41,11 @@ import java.util.List;
 
 public class JChemLabeller extends Labeller<MolAtom, MolBond> {
 
+  public JChemLabeller() {
+    // Molecule.indexOf() is linear
+    setCompactView(true);
+  }
+
   private static List<Configuration<MolAtom, MolBond>> findConfigs(
           Molecule mol) {
     List<Configuration<MolAtom, MolBond>> configs = new ArrayList<>();
@@ -107,6 +107,11 @@ public class JChemMol extends BaseMol<MolAtom,MolBond> {
     return rbonds.contains(bond);
   }
 
+  @Override
+  public boolean isInRing(int bondIdx) {
+    return isInRing(mol.getBond(bondIdx));
+  }
+
   private synchronized void findRingBonds() {
     // XXX: There is an O(n) algorithm for this but couldn't int in the API
     final int res[][][] = mol.getAromaticAndAliphaticRings(0, false, false, 18, 1000);
@@ -39,6 +39,8 @@ public class OpsinLabeller extends Labeller<Atom, Bond> {
 
   OpsinLabeller()
   {
+    // OpsinMol index lookups are linear
+    setCompactView(true);
   }
 
   static List<Configuration<Atom, Bond>> createCfgs(Fragment fragment)
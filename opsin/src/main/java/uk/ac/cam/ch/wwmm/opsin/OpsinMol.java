@@ -122,6 +122,12 @@ final class OpsinMol extends BaseMol<Atom, Bond> {
     return false;
   }
 
+  @Override
+  public boolean isInRing(int bondIdx)
+  {
+    return false;
+  }
+
   @Override
   public int getAtomicNum(Atom atom)
   {